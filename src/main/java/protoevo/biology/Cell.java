@@ -3,12 +3,14 @@ package protoevo.biology;
 import protoevo.core.Particle;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.core.StatSchema;
+import protoevo.env.ChemicalSolution;
 import protoevo.env.Rock;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Geometry;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.*;
 
@@ -20,7 +22,8 @@ public abstract class Cell extends Particle implements Serializable
 	public interface EntityBuilder<T, R> {
 		R apply(T t) throws MiscarriageException;
 	}
-	private Color healthyColour, fullyDegradedColour;
+	private int healthyColour, fullyDegradedColour, colour;
+	private boolean hasDegradedColour = false;
 	private int generation = 1;
 	private float mass = -1;
 	private boolean dead = false;
@@ -30,29 +33,32 @@ public abstract class Cell extends Particle implements Serializable
 	private float growthRate = 0.0f;
 	private float energyAvailable = Settings.startingAvailableCellEnergy;
 	private float constructionMassAvailable, wasteMass;
-	private final Map<Food.ComplexMolecule, Float> availableComplexMolecules;
 	private final Collection<CellAdhesion.CellBinding> cellBindings, toAttach;
-	private final Map<CellAdhesion.CellAdhesionMolecule, Float> surfaceCAMs;
-	private final Map<Food.Type, Float> foodDigestionRates;
-	private final Map<Food.Type, Food> foodToDigest;
 	private final Collection<ConstructionProject> constructionProjects;
-	private final Map<Food.ComplexMolecule, Float> complexMoleculeProductionRates;
-	private final Map<CellAdhesion.CellAdhesionMolecule, Float> camProductionRates;
 	private final ArrayList<Cell> children = new ArrayList<>();
 
+	// Indexed by ComplexMolecule ordinal
+	private final float[] availableComplexMolecules, complexMoleculeProductionRates;
+	// Indexed by Food.Type ordinal, with no food to digest held for types the cell has not eaten
+	private final float[] foodDigestionRates;
+	private final Food[] foodToDigest;
+	// Indexed by CAM binding signature, and only allocated once the cell has or produces a CAM
+	private CellAdhesion.CellAdhesionMolecule[] surfaceCAMs, producedCAMs;
+	private float[] surfaceCAMAmounts, camProductionRates;
+	// Bit s is set if a CAM with signature s is on the surface, or if a surface CAM binds to signature s
+	private long surfaceCAMMask, bindsToMask;
+
 	public Cell(Tank tank)
 	{
 		super(tank);
-		healthyColour = new Color(255, 255, 255);
-		foodDigestionRates = new TreeMap<>();
-		foodToDigest = new TreeMap<>();
+		setHealthyColour(Colour.WHITE);
+		foodDigestionRates = new float[Food.Type.numTypes()];
+		foodToDigest = new Food[Food.Type.numTypes()];
 		cellBindings = new ArrayList<>(10);
 		toAttach = new ArrayList<>(5);
-		surfaceCAMs = new HashMap<>(10);
 		constructionProjects = new ArrayList<>(10);
-		complexMoleculeProductionRates = new TreeMap<>();
-		camProductionRates = new HashMap<>(10);
-		availableComplexMolecules = new TreeMap<>();
+		complexMoleculeProductionRates = new float[Food.ComplexMolecule.numMolecules()];
+		availableComplexMolecules = new float[Food.ComplexMolecule.numMolecules()];
 	}
 	
 	public void update(float delta) {
@@ -92,8 +98,8 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public void resourceProduction(float delta) {
-		for (Food.ComplexMolecule molecule : complexMoleculeProductionRates.keySet()) {
-			float producedMass = delta * complexMoleculeProductionRates.getOrDefault(molecule, 0f);
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all()) {
+			float producedMass = delta * complexMoleculeProductionRates[molecule.ordinal()];
 			float requiredEnergy = molecule.getProductionCost() * producedMass;
 			if (producedMass > 0 && constructionMassAvailable > producedMass && energyAvailable > requiredEnergy) {
 				addAvailableComplexMolecule(molecule, producedMass);
@@ -101,12 +107,16 @@ public abstract class Cell extends Particle implements Serializable
 				useEnergy(requiredEnergy);
 			}
 		}
-		for (CellAdhesion.CellAdhesionMolecule cam : camProductionRates.keySet()) {
-			float producedMass = delta * camProductionRates.getOrDefault(cam, 0f);
+		if (producedCAMs == null)
+			return;
+		for (int slot = 0; slot < producedCAMs.length; slot++) {
+			CellAdhesion.CellAdhesionMolecule cam = producedCAMs[slot];
+			if (cam == null)
+				continue;
+			float producedMass = delta * camProductionRates[slot];
 			float requiredEnergy = cam.getProductionCost() * producedMass;
 			if (producedMass > 0 && constructionMassAvailable > producedMass && energyAvailable > requiredEnergy) {
-				float currentAmount = surfaceCAMs.getOrDefault(cam, 0f);
-				surfaceCAMs.put(cam, currentAmount + producedMass);
+				setCAMAvailable(cam, getCAMAvailable(cam) + producedMass);
 				useConstructionMass(producedMass);
 				useEnergy(requiredEnergy);
 			}
@@ -114,11 +124,11 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public float getDigestionRate(Food.Type foodType) {
-		return foodDigestionRates.getOrDefault(foodType, 0f);
+		return foodDigestionRates[foodType.ordinal()];
 	}
 
 	public void setDigestionRate(Food.Type foodType, float rate) {
-		foodDigestionRates.put(foodType, rate);
+		foodDigestionRates[foodType.ordinal()] = rate;
 	}
 
 	public void extractFood(EdibleCell cell, float extraction) {
@@ -126,20 +136,24 @@ public abstract class Cell extends Particle implements Serializable
 		float extractedMass = cell.getMass() * extraction;
 		cell.removeMass(Settings.foodExtractionWasteMultiplier * extractedMass);
 		cell.setHealth(cell.getHealth() * (1 - 5f * extraction));
-		Food food = foodToDigest.getOrDefault(foodType, new Food(extractedMass, foodType));
+		Food food = foodToDigest[foodType.ordinal()];
+		if (food == null)
+			food = new Food(extractedMass, foodType);
 		food.addSimpleMass(extractedMass);
-		for (Food.ComplexMolecule molecule : cell.getComplexMolecules()) {
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all()) {
 			if (cell.getComplexMoleculeAvailable(molecule) > 0) {
 				float extractedAmount = extraction * cell.getComplexMoleculeAvailable(molecule);
 				cell.depleteComplexMolecule(molecule, extractedAmount);
 				food.addComplexMoleculeMass(molecule, extractedMass);
 			}
 		}
-		foodToDigest.put(foodType, food);
+		foodToDigest[foodType.ordinal()] = food;
 	}
 
 	public void digest(float delta) {
-		for (Food food : foodToDigest.values()) {
+		for (Food food : foodToDigest) {
+			if (food == null)
+				continue;
 			float rate = delta * 2f * getDigestionRate(food.getType());
 			if (food.getSimpleMass() > 0) {
 				float massExtracted = food.getSimpleMass() * rate;
@@ -147,7 +161,7 @@ public abstract class Cell extends Particle implements Serializable
 				food.subtractSimpleMass(massExtracted);
 				energyAvailable += food.getEnergy(massExtracted);
 			}
-			for (Food.ComplexMolecule molecule : food.getComplexMolecules()) {
+			for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all()) {
 				float amount = food.getComplexMoleculeMass(molecule);
 				if (amount == 0)
 					continue;
@@ -187,6 +201,14 @@ public abstract class Cell extends Particle implements Serializable
 		super.physicsStep(delta);
 	}
 
+	/**
+	 * Deposits any chemicals produced by the cell into the chemical solution.
+	 * By default cells do not produce any chemicals.
+	 * @param delta time since chemicals were last deposited
+	 * @param chemicalSolution the chemical solution of the tank
+	 */
+	public void depositChemicals(float delta, ChemicalSolution chemicalSolution) {}
+
 	public void addConstructionProject(ConstructionProject project) {
 		constructionProjects.add(project);
 	}
@@ -195,6 +217,14 @@ public abstract class Cell extends Particle implements Serializable
 		grow(delta);
 	}
 
+	/**
+	 * Rough relative cost of calling {@link #handleInteractions} and {@link #update} on this cell,
+	 * used to balance the parallel update pass across threads.
+	 */
+	public float getUpdateCost() {
+		return 1f;
+	}
+
 	public void grow(float delta) {
 		float gr = getGrowthRate();
 		float newR = super.getRadius() * (1 + gr * delta);
@@ -230,8 +260,16 @@ public abstract class Cell extends Particle implements Serializable
 		return cellBindings;
 	}
 
+	/**
+	 * @return the CAMs on the surface of the cell
+	 */
 	public Collection<CellAdhesion.CellAdhesionMolecule> getSurfaceCAMs() {
-		return surfaceCAMs.keySet();
+		List<CellAdhesion.CellAdhesionMolecule> cams = new ArrayList<>();
+		if (surfaceCAMs != null)
+			for (CellAdhesion.CellAdhesionMolecule cam : surfaceCAMs)
+				if (cam != null)
+					cams.add(cam);
+		return cams;
 	}
 
 	public boolean cannotMakeBinding() {
@@ -242,16 +280,21 @@ public abstract class Cell extends Particle implements Serializable
 	public void onParticleCollisionCallback(Particle p, float delta) {
 		if (p instanceof Cell) {
 			Cell otherCell = (Cell) p;
+			if ((bindsToMask & otherCell.surfaceCAMMask) == 0)
+				return;
 			if (otherCell.cannotMakeBinding() || cannotMakeBinding())
 				return;
 
-			for (CellAdhesion.CellAdhesionMolecule myCAM : getSurfaceCAMs()) {
-				for (CellAdhesion.CellAdhesionMolecule theirCAM : otherCell.getSurfaceCAMs()) {
-					// TODO: implement probabilistic CAM binding based on amounts
-					if (myCAM.bindsTo(theirCAM)) {
-						createNewBinding(myCAM, otherCell);
-						otherCell.createNewBinding(theirCAM, this);
-					}
+			for (long mask = surfaceCAMMask; mask != 0; mask &= mask - 1) {
+				CellAdhesion.CellAdhesionMolecule myCAM = surfaceCAMs[Long.numberOfTrailingZeros(mask)];
+				int target = myCAM.getTargetBindingSignature();
+				if ((otherCell.surfaceCAMMask & (1L << target)) == 0)
+					continue;
+				CellAdhesion.CellAdhesionMolecule theirCAM = otherCell.surfaceCAMs[target];
+				// TODO: implement probabilistic CAM binding based on amounts
+				if (myCAM.bindsTo(theirCAM)) {
+					createNewBinding(myCAM, otherCell);
+					otherCell.createNewBinding(theirCAM, this);
 				}
 			}
 		}
@@ -293,9 +336,9 @@ public abstract class Cell extends Particle implements Serializable
 			other.useEnergy(energyTransfer);
 		}
 
-		for (Food.ComplexMolecule molecule : getComplexMolecules())
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all())
 			handleComplexMoleculeTransport(other, molecule, delta);
-		for (Food.ComplexMolecule molecule : other.getComplexMolecules())
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all())
 			other.handleComplexMoleculeTransport(this, molecule, delta);
 	}
 
@@ -332,6 +375,8 @@ public abstract class Cell extends Particle implements Serializable
 
 		if (health < 0.05)
 			killCell();
+		else
+			updateColour();
 	}
 
 	public void handleDeath() {
@@ -349,63 +394,82 @@ public abstract class Cell extends Particle implements Serializable
 
 	public abstract String getPrettyName();
 
-	public Map<String, Float> getStats() {
-		TreeMap<String, Float> stats = new TreeMap<>();
-		stats.put("Age", 100 * timeAlive);
-		stats.put("Health", 100 * getHealth());
-		stats.put("Size", Settings.statsDistanceScalar * getRadius());
-		stats.put("Speed", Settings.statsDistanceScalar * getSpeed());
-		stats.put("Generation", (float) getGeneration());
+	private static final int STAT_AGE = StatSchema.register("Age");
+	private static final int STAT_HEALTH = StatSchema.register("Health");
+	private static final int STAT_SIZE = StatSchema.register("Size");
+	private static final int STAT_SPEED = StatSchema.register("Speed");
+	private static final int STAT_GENERATION = StatSchema.register("Generation");
+	private static final int STAT_AVAILABLE_ENERGY = StatSchema.register("Available Energy");
+	private static final int STAT_TOTAL_MASS = StatSchema.register("Total Mass");
+	private static final int STAT_CONSTRUCTION_MASS = StatSchema.register("Construction Mass");
+	private static final int STAT_WASTE_MASS = StatSchema.register("Waste Mass");
+	private static final int STAT_GROWTH_RATE = StatSchema.register("Growth Rate");
+	private static final int STAT_NUM_BINDINGS = StatSchema.register("Num Cell Bindings");
+	private static final int[] STAT_CAM_MASS =
+			StatSchema.register(CellAdhesion.CAMJunctionType.values(), " CAM Mass");
+	private static final int[] STAT_MOLECULE_PRODUCTION =
+			StatSchema.register(Food.ComplexMolecule.values(), " Production");
+	private static final int[] STAT_MOLECULE_AVAILABLE =
+			StatSchema.register(Food.ComplexMolecule.values(), " Available");
+	private static final int[] STAT_DIGESTION_RATE =
+			StatSchema.register(Food.Type.values(), " Digestion Rate");
+	private static final int[] STAT_TO_DIGEST =
+			StatSchema.register(Food.Type.values(), " to Digest");
+
+	/**
+	 * Writes the cell's statistics into {@code stats}, indexed by their {@link StatSchema} ids.
+	 * Statistics that do not apply to the cell are left untouched, so should be initialised to NaN.
+	 */
+	public void writeStats(float[] stats) {
+		stats[STAT_AGE] = 100 * timeAlive;
+		stats[STAT_HEALTH] = 100 * getHealth();
+		stats[STAT_SIZE] = Settings.statsDistanceScalar * getRadius();
+		stats[STAT_SPEED] = Settings.statsDistanceScalar * getSpeed();
+		stats[STAT_GENERATION] = getGeneration();
 		float energyScalar = Settings.statsMassScalar * Settings.statsDistanceScalar * Settings.statsDistanceScalar;
-		stats.put("Available Energy", energyScalar * energyAvailable);
-		stats.put("Total Mass", Settings.statsMassScalar * getMass());
-		stats.put("Construction Mass", Settings.statsMassScalar * constructionMassAvailable);
+		stats[STAT_AVAILABLE_ENERGY] = energyScalar * energyAvailable;
+		stats[STAT_TOTAL_MASS] = Settings.statsMassScalar * getMass();
+		stats[STAT_CONSTRUCTION_MASS] = Settings.statsMassScalar * constructionMassAvailable;
 		if (wasteMass > 0)
-			stats.put("Waste Mass", Settings.statsDistanceScalar * wasteMass);
-
-		float gr = getGrowthRate();
-		stats.put("Growth Rate", Settings.statsDistanceScalar * gr);
+			stats[STAT_WASTE_MASS] = Settings.statsDistanceScalar * wasteMass;
 
-		for (Food.ComplexMolecule molecule : availableComplexMolecules.keySet())
-			if (availableComplexMolecules.get(molecule) > 0)
-				stats.put(molecule + " Available", availableComplexMolecules.get(molecule));
+		stats[STAT_GROWTH_RATE] = Settings.statsDistanceScalar * getGrowthRate();
 
 		if (cellBindings.size() > 0)
-			stats.put("Num Cell Bindings", (float) cellBindings.size());
-
-		for (CellAdhesion.CAMJunctionType junctionType : CellAdhesion.CAMJunctionType.values()) {
-//			int count = 0;
-//			for (CellAdhesion.CellBinding binding : cellBindings)
-//				if (binding.getJunctionType().equals(junctionType))
-//					count++;
-//			if (count > 0)
-//				stats.put(junctionType + " Bindings", (float) count);
-
-			float camMass = 0;
-			for (CellAdhesion.CellAdhesionMolecule molecule : surfaceCAMs.keySet())
-				if (molecule.getJunctionType().equals(junctionType))
-					camMass += surfaceCAMs.get(molecule);
-			if (camMass > 0)
-				stats.put(junctionType + " CAM Mass", camMass);
+			stats[STAT_NUM_BINDINGS] = cellBindings.size();
+
+		if (surfaceCAMs != null) {
+			float[] camMass = new float[STAT_CAM_MASS.length];
+			for (int slot = 0; slot < surfaceCAMs.length; slot++)
+				if (surfaceCAMs[slot] != null)
+					camMass[surfaceCAMs[slot].getJunctionType().ordinal()] += surfaceCAMAmounts[slot];
+			for (int i = 0; i < camMass.length; i++)
+				if (camMass[i] > 0)
+					stats[STAT_CAM_MASS[i]] = camMass[i];
 		}
 
 		float massTimeScalar = Settings.statsMassScalar / Settings.statsTimeScalar;
-		for (Food.ComplexMolecule molecule : complexMoleculeProductionRates.keySet())
-			if (complexMoleculeProductionRates.get(molecule) > 0)
-				stats.put(molecule + " Production", massTimeScalar * complexMoleculeProductionRates.get(molecule));
+		for (int i = 0; i < complexMoleculeProductionRates.length; i++)
+			if (complexMoleculeProductionRates[i] > 0)
+				stats[STAT_MOLECULE_PRODUCTION[i]] = massTimeScalar * complexMoleculeProductionRates[i];
 
-		for (Food.ComplexMolecule molecule : availableComplexMolecules.keySet())
-			if (availableComplexMolecules.get(molecule) > 0)
-				stats.put(molecule + " Available", 100f * Settings.statsMassScalar * availableComplexMolecules.get(molecule));
+		for (int i = 0; i < availableComplexMolecules.length; i++)
+			if (availableComplexMolecules[i] > 0)
+				stats[STAT_MOLECULE_AVAILABLE[i]] = 100f * Settings.statsMassScalar * availableComplexMolecules[i];
 
-		for (Food.Type foodType : foodDigestionRates.keySet())
-			if (foodDigestionRates.get(foodType) > 0)
-				stats.put(foodType + " Digestion Rate", massTimeScalar * foodDigestionRates.get(foodType));
+		for (int i = 0; i < foodDigestionRates.length; i++)
+			if (foodDigestionRates[i] > 0)
+				stats[STAT_DIGESTION_RATE[i]] = massTimeScalar * foodDigestionRates[i];
 
-		for (Food food : foodToDigest.values())
-			stats.put(food + " to Digest", Settings.statsMassScalar * food.getSimpleMass());
+		for (int i = 0; i < foodToDigest.length; i++)
+			if (foodToDigest[i] != null)
+				stats[STAT_TO_DIGEST[i]] = Settings.statsMassScalar * foodToDigest[i].getSimpleMass();
+	}
 
-		return stats;
+	public Map<String, Float> getStats() {
+		float[] stats = StatSchema.newValues();
+		writeStats(stats);
+		return StatSchema.toMap(stats);
 	}
 
 	public Map<String, Float> getDebugStats() {
@@ -426,40 +490,40 @@ public abstract class Cell extends Particle implements Serializable
 	public void killCell() {
 		dead = true;
 		health = 0;
+		updateColour();
 	}
 
+	/**
+	 * @return the colour between the healthy and fully degraded colours given by the cell's health,
+	 * which is only recomputed when the health or those colours change
+	 */
 	@Override
-	public Color getColor() {
-		Color healthyColour = getHealthyColour();
-		Color degradedColour = getFullyDegradedColour();
-		return new Color(
-			(int) (healthyColour.getRed() + (1 - getHealth()) * (degradedColour.getRed() - healthyColour.getRed())),
-			(int) (healthyColour.getGreen() + (1 - getHealth()) * (degradedColour.getGreen() - healthyColour.getGreen())),
-			(int) (healthyColour.getBlue() + (1 - getHealth()) * (degradedColour.getBlue() - healthyColour.getBlue()))
-		);
+	public int getColor() {
+		return colour;
 	}
 
-	public Color getHealthyColour() {
+	private void updateColour() {
+		colour = Colour.lerp(healthyColour, getFullyDegradedColour(), 1 - health);
+	}
+
+	public int getHealthyColour() {
 		return healthyColour;
 	}
 
-	public void setHealthyColour(Color healthyColour) {
+	public void setHealthyColour(int healthyColour) {
 		this.healthyColour = healthyColour;
+		updateColour();
 	}
 
-	public void setDegradedColour(Color fullyDegradedColour) {
+	public void setDegradedColour(int fullyDegradedColour) {
 		this.fullyDegradedColour = fullyDegradedColour;
+		hasDegradedColour = true;
+		updateColour();
 	}
 
-	public Color getFullyDegradedColour() {
-		if (fullyDegradedColour == null) {
-			Color healthyColour = getHealthyColour();
-			int r = healthyColour.getRed();
-			int g = healthyColour.getGreen();
-			int b = healthyColour.getBlue();
-			float p = 0.7f;
-			return new Color((int) (r*p), (int) (g*p), (int) (b*p));
-		}
+	public int getFullyDegradedColour() {
+		if (!hasDegradedColour)
+			return Colour.scale(healthyColour, 0.7f);
 		return fullyDegradedColour;
 	}
 
@@ -515,25 +579,28 @@ public abstract class Cell extends Particle implements Serializable
 	private void allocateChildResources(Cell child, float p) {
 		child.setAvailableConstructionMass(constructionMassAvailable * p);
 		child.setEnergyAvailable(energyAvailable * p);
-		for (Food.ComplexMolecule molecule : availableComplexMolecules.keySet())
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all())
 			child.setComplexMoleculeAvailable(molecule, p * getComplexMoleculeAvailable(molecule));
 
-		for (CellAdhesion.CellAdhesionMolecule cam : getSurfaceCAMs())
-			child.setCAMAvailable(cam, p * getCAMAvailable(cam));
+		if (surfaceCAMs != null)
+			for (CellAdhesion.CellAdhesionMolecule cam : surfaceCAMs)
+				if (cam != null)
+					child.setCAMAvailable(cam, p * getCAMAvailable(cam));
 
-		for (Food.Type foodType : foodToDigest.keySet()) {
-			Food oldFood = foodToDigest.get(foodType);
-			Food newFood = new Food(p * oldFood.getSimpleMass(), foodType);
-			for (Food.ComplexMolecule molecule : oldFood.getComplexMolecules()) {
+		for (Food oldFood : foodToDigest) {
+			if (oldFood == null)
+				continue;
+			Food newFood = new Food(p * oldFood.getSimpleMass(), oldFood.getType());
+			for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all()) {
 				float moleculeAmount = p * oldFood.getComplexMoleculeMass(molecule);
 				newFood.addComplexMoleculeMass(molecule, moleculeAmount);
 			}
-			child.setFoodToDigest(foodType, newFood);
+			child.setFoodToDigest(oldFood.getType(), newFood);
 		}
 	}
 
 	public void setFoodToDigest(Food.Type foodType, Food food) {
-		foodToDigest.put(foodType, food);
+		foodToDigest[foodType.ordinal()] = food;
 	}
 
 	public Collection<Cell> getChildren() {
@@ -541,11 +608,24 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public float getCAMAvailable(CellAdhesion.CellAdhesionMolecule cam) {
-		return surfaceCAMs.getOrDefault(cam, 0f);
+		int slot = cam.getChemicalBindingSignature();
+		if (surfaceCAMs == null || surfaceCAMs[slot] != cam)
+			return 0;
+		return surfaceCAMAmounts[slot];
 	}
 
 	public void setCAMAvailable(CellAdhesion.CellAdhesionMolecule cam, float amount) {
-		surfaceCAMs.put(cam, amount);
+		if (surfaceCAMs == null) {
+			surfaceCAMs = new CellAdhesion.CellAdhesionMolecule[Settings.numPossibleCAMs];
+			surfaceCAMAmounts = new float[Settings.numPossibleCAMs];
+		}
+		int slot = cam.getChemicalBindingSignature();
+		surfaceCAMs[slot] = cam;
+		surfaceCAMAmounts[slot] = amount;
+		surfaceCAMMask |= 1L << slot;
+		bindsToMask = 0;
+		for (long mask = surfaceCAMMask; mask != 0; mask &= mask - 1)
+			bindsToMask |= 1L << surfaceCAMs[Long.numberOfTrailingZeros(mask)].getTargetBindingSignature();
 	}
 
 	public boolean enoughEnergyAvailable(float work) {
@@ -572,8 +652,15 @@ public abstract class Cell extends Particle implements Serializable
 		energyAvailable = Math.max(0, energyAvailable - energy);
 	}
 
+	/**
+	 * @return the complex molecules of which the cell has some available
+	 */
 	public Collection<Food.ComplexMolecule> getComplexMolecules() {
-		return availableComplexMolecules.keySet();
+		List<Food.ComplexMolecule> molecules = new ArrayList<>(availableComplexMolecules.length);
+		for (Food.ComplexMolecule molecule : Food.ComplexMolecule.all())
+			if (availableComplexMolecules[molecule.ordinal()] > 0)
+				molecules.add(molecule);
+		return molecules;
 	}
 
 	public void depleteComplexMolecule(Food.ComplexMolecule molecule, float amount) {
@@ -582,13 +669,12 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public float getComplexMoleculeAvailable(Food.ComplexMolecule molecule) {
-		return availableComplexMolecules.getOrDefault(molecule, 0f);
+		return availableComplexMolecules[molecule.ordinal()];
 	}
 
 	private void addAvailableComplexMolecule(Food.ComplexMolecule molecule, float amount) {
-		float currentAmount = availableComplexMolecules.getOrDefault(molecule, 0f);
-		float newAmount = Math.min(getComplexMoleculeMassCap(), currentAmount + amount);
-		availableComplexMolecules.put(molecule, newAmount);
+		float currentAmount = availableComplexMolecules[molecule.ordinal()];
+		availableComplexMolecules[molecule.ordinal()] = Math.min(getComplexMoleculeMassCap(), currentAmount + amount);
 		mass = computeMass();
 	}
 
@@ -597,7 +683,7 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public void setComplexMoleculeAvailable(Food.ComplexMolecule molecule, float amount) {
-		availableComplexMolecules.put(molecule, Math.max(0, amount));
+		availableComplexMolecules[molecule.ordinal()] = Math.max(0, amount);
 		mass = computeMass();
 	}
 
@@ -623,11 +709,17 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	public void setComplexMoleculeProductionRate(Food.ComplexMolecule molecule, float rate) {
-		complexMoleculeProductionRates.put(molecule, rate);
+		complexMoleculeProductionRates[molecule.ordinal()] = rate;
 	}
 
 	public void setCAMProductionRate(CellAdhesion.CellAdhesionMolecule cam, float rate) {
-		camProductionRates.put(cam, rate);
+		if (producedCAMs == null) {
+			producedCAMs = new CellAdhesion.CellAdhesionMolecule[Settings.numPossibleCAMs];
+			camProductionRates = new float[Settings.numPossibleCAMs];
+		}
+		int slot = cam.getChemicalBindingSignature();
+		producedCAMs[slot] = cam;
+		camProductionRates[slot] = rate;
 	}
 
 	@Override
@@ -639,7 +731,7 @@ public abstract class Cell extends Particle implements Serializable
 
 	public float computeMass() {
 		float extraMass = constructionMassAvailable + wasteMass;
-		for (float m : availableComplexMolecules.values())
+		for (float m : availableComplexMolecules)
 			extraMass += m;
 		return getMass(getRadius(), extraMass);
 	}
@@ -95,6 +95,12 @@ public class CellAdhesion implements Serializable  {
         CAMJunctionType getJunctionType();
         int getChemicalBindingSignature();
 
+        /**
+         * @return the signature of the CAMs this one binds to, so that {@code bindsTo(cam)} is true exactly
+         * when this equals {@code cam.getChemicalBindingSignature()}
+         */
+        int getTargetBindingSignature();
+
         default float getProductionCost() {
             return Settings.camProductionEnergyCost;
         }
@@ -137,6 +143,11 @@ public class CellAdhesion implements Serializable  {
                 return getChemicalBindingSignature() == cam.getChemicalBindingSignature();
             }
 
+            @Override
+            public int getTargetBindingSignature() {
+                return signature;
+            }
+
             @Override
             public CAMJunctionType getJunctionType() {
                 return junctionType;
@@ -165,6 +176,11 @@ public class CellAdhesion implements Serializable  {
                 return bindingSignature == cam.getChemicalBindingSignature();
             }
 
+            @Override
+            public int getTargetBindingSignature() {
+                return bindingSignature;
+            }
+
             @Override
             public CAMJunctionType getJunctionType() {
                 return junctionType;
@@ -1,7 +1,9 @@
 package protoevo.biology;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public abstract class ConstructionProject implements Serializable {
@@ -12,7 +14,9 @@ public abstract class ConstructionProject implements Serializable {
     private final float requiredEnergy;
     private float timeSpent;
     private final float timeToComplete;
-    private final Map<Food.ComplexMolecule, Float> requiredComplexMolecules;
+    // Indexed by ComplexMolecule ordinal
+    private final float[] requiredComplexMolecules = new float[Food.ComplexMolecule.numMolecules()];
+    private final List<Food.ComplexMolecule> requiredMolecules = new ArrayList<>();
 
     /**
      * @param requiredMass required mass to contribute to project
@@ -25,7 +29,12 @@ public abstract class ConstructionProject implements Serializable {
                                float timeToComplete,
                                Map<Food.ComplexMolecule, Float> requiredComplexMolecules) {
         this.requiredMass = requiredMass;
-        this.requiredComplexMolecules = requiredComplexMolecules;
+        if (requiredComplexMolecules != null) {
+            for (Map.Entry<Food.ComplexMolecule, Float> entry : requiredComplexMolecules.entrySet()) {
+                this.requiredComplexMolecules[entry.getKey().ordinal()] = entry.getValue();
+                requiredMolecules.add(entry.getKey());
+            }
+        }
         this.timeToComplete = timeToComplete;
         this.requiredEnergy = requiredEnergy;
     }
@@ -35,15 +44,15 @@ public abstract class ConstructionProject implements Serializable {
     }
 
     public boolean requiresComplexMolecules() {
-        return requiredComplexMolecules != null && !requiredComplexMolecules.isEmpty();
+        return !requiredMolecules.isEmpty();
     }
 
     public Collection<Food.ComplexMolecule> getRequiredMolecules() {
-        return requiredComplexMolecules.keySet();
+        return requiredMolecules;
     }
 
     public float getRequiredComplexMoleculeAmount(Food.ComplexMolecule molecule) {
-        return requiredComplexMolecules.getOrDefault(molecule, 0f);
+        return requiredComplexMolecules[molecule.ordinal()];
     }
 
     public boolean canMakeProgress(float availableEnergy,
@@ -61,6 +70,21 @@ public abstract class ConstructionProject implements Serializable {
         return true;
     }
 
+    /**
+     * @param availableComplexMolecules the amount of each complex molecule available, indexed by ordinal
+     */
+    public boolean canMakeProgress(float availableEnergy,
+                                   float availableMass,
+                                   float[] availableComplexMolecules,
+                                   float delta) {
+        if (availableEnergy < energyToMakeProgress(delta) || availableMass < massToMakeProgress(delta))
+            return false;
+        for (Food.ComplexMolecule molecule : requiredMolecules)
+            if (availableComplexMolecules[molecule.ordinal()] < complexMoleculesToMakeProgress(delta, molecule))
+                return false;
+        return true;
+    }
+
     public float getProgress() {
         return Math.max(Math.min(timeSpent / timeToComplete, 1f), 0f);
     }
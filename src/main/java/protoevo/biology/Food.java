@@ -3,8 +3,11 @@ package protoevo.biology;
 import protoevo.core.Settings;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Food implements Serializable {
@@ -49,20 +52,35 @@ public class Food implements Serializable {
         public float getProductionCost() {
             return productionCost;
         }
+
+        private static final ComplexMolecule[] values = values();
+
+        /**
+         * @return the molecules in order of ordinal, without copying the array as {@link #values()} does
+         */
+        static ComplexMolecule[] all() {
+            return values;
+        }
+
+        public static int numMolecules() {
+            return values.length;
+        }
     }
 
     private float mass;
     private final Type type;
-    private final Map<ComplexMolecule, Float> complexMoleculeMasses;
+    // Indexed by ComplexMolecule ordinal
+    private final float[] complexMoleculeMasses = new float[ComplexMolecule.numMolecules()];
 
     public Food(float mass, Type foodType, HashMap<ComplexMolecule, Float> complexMoleculeMass) {
         this.mass = mass;
         this.type = foodType;
-        this.complexMoleculeMasses = complexMoleculeMass;
+        addComplexMolecules(complexMoleculeMass);
     }
 
     public Food(float mass, Type foodType) {
-        this(mass, foodType, new HashMap<>(0));
+        this.mass = mass;
+        this.type = foodType;
     }
 
     public Type getType() {
@@ -82,30 +100,42 @@ public class Food implements Serializable {
     }
 
     public float getComplexMoleculeMass(ComplexMolecule molecule) {
-        return complexMoleculeMasses.getOrDefault(molecule, 0f);
+        return complexMoleculeMasses[molecule.ordinal()];
     }
 
+    /**
+     * @return the molecules of which the food holds some mass
+     */
     public Collection<ComplexMolecule> getComplexMolecules() {
-        return complexMoleculeMasses.keySet();
+        List<ComplexMolecule> molecules = new ArrayList<>(complexMoleculeMasses.length);
+        for (ComplexMolecule molecule : ComplexMolecule.all())
+            if (complexMoleculeMasses[molecule.ordinal()] > 0)
+                molecules.add(molecule);
+        return molecules;
     }
 
     public void subtractComplexMolecule(ComplexMolecule molecule, float extracted) {
-        float currentAmount = getComplexMoleculeMass(molecule);
-        complexMoleculeMasses.put(molecule, Math.max(0, currentAmount - extracted));
+        int i = molecule.ordinal();
+        complexMoleculeMasses[i] = Math.max(0, complexMoleculeMasses[i] - extracted);
     }
 
+    /**
+     * @return a copy of the masses of the molecules the food holds some of
+     */
     public Map<ComplexMolecule, Float> getComplexMoleculeMasses() {
-        return complexMoleculeMasses;
+        Map<ComplexMolecule, Float> masses = new EnumMap<>(ComplexMolecule.class);
+        for (ComplexMolecule molecule : getComplexMolecules())
+            masses.put(molecule, complexMoleculeMasses[molecule.ordinal()]);
+        return masses;
     }
 
     public void addComplexMolecules(Map<ComplexMolecule, Float> masses) {
-        for (ComplexMolecule molecule : masses.keySet())
-            addComplexMoleculeMass(molecule, masses.get(molecule));
+        for (Map.Entry<ComplexMolecule, Float> entry : masses.entrySet())
+            addComplexMoleculeMass(entry.getKey(), entry.getValue());
     }
 
     public void addComplexMoleculeMass(ComplexMolecule molecule, float mass) {
-        float currentMass = complexMoleculeMasses.getOrDefault(molecule, 0f);
-        complexMoleculeMasses.put(molecule, currentMass + mass);
+        complexMoleculeMasses[molecule.ordinal()] += mass;
     }
 
     public float getEnergy(float m) {
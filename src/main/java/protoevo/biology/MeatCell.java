@@ -1,9 +1,12 @@
 package protoevo.biology;
 
+import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.env.Chemical;
+import protoevo.env.ChemicalSolution;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 
-import java.awt.*;
 
 public class MeatCell extends EdibleCell {
 
@@ -17,8 +20,8 @@ public class MeatCell extends EdibleCell {
         int r = 150 + Simulation.RANDOM.nextInt(105);
         int g = 25  + Simulation.RANDOM.nextInt(100);
         int b = 25  + Simulation.RANDOM.nextInt(100);
-        setHealthyColour(new Color(r, g, b));
-        setDegradedColour(new Color(158, 121, 79));
+        setHealthyColour(Colour.rgb(r, g, b));
+        setDegradedColour(Colour.rgb(158, 121, 79));
     }
 
     public void age(float delta) {
@@ -36,6 +39,12 @@ public class MeatCell extends EdibleCell {
         super.update(delta);
     }
 
+    @Override
+    public void depositChemicals(float delta, ChemicalSolution chemicalSolution) {
+        float k = Settings.meatPheromoneDeposit;
+        chemicalSolution.deposit(Chemical.MEAT_PHEROMONE, getPos(), delta * k * getRadius() * getHealth());
+    }
+
     @Override
     public String getPrettyName() {
         return "Meat";
@@ -4,8 +4,6 @@ import protoevo.env.ChemicalSolution;
 import protoevo.core.Settings;
 import protoevo.neat.NeuralNetwork;
 
-import java.awt.*;
-
 public class NNBrain implements Brain {
 
     public final NeuralNetwork network;
@@ -39,33 +37,26 @@ public class NNBrain implements Brain {
 
         if (Settings.enableChemicalField) {
             ChemicalSolution chemicalSolution = p.getTank().getChemicalSolution();
-            int chemicalX1 = chemicalSolution.toChemicalGridX(p.getPos().getX() - p.getRadius());
-            int chemicalX2 = chemicalSolution.toChemicalGridX(p.getPos().getX() + p.getRadius());
-            int chemicalY1 = chemicalSolution.toChemicalGridY(p.getPos().getX() - p.getRadius());
-            int chemicalY2 = chemicalSolution.toChemicalGridY(p.getPos().getX() + p.getRadius());
-            inputs[i++] = chemicalSolution.getPlantPheromoneDensity(chemicalX1, chemicalY1) -
-                    chemicalSolution.getPlantPheromoneDensity(chemicalX2, chemicalY2);
-            inputs[i++] = chemicalSolution.getPlantPheromoneDensity(chemicalX1, chemicalY2) -
-                    chemicalSolution.getPlantPheromoneDensity(chemicalX2, chemicalY1);
-            int chemicalX = chemicalSolution.toChemicalGridX(p.getPos().getX());
-            int chemicalY = chemicalSolution.toChemicalGridX(p.getPos().getY());
-            inputs[i++] = 2 * chemicalSolution.getPlantPheromoneDensity(chemicalX, chemicalY) - 1;
-        }
-
-        float retinaHealth = p.getRetina().getHealth();
-        for (Retina.Cell cell : p.getRetina()) {
-            if (cell.anythingVisible()) {
-                Color colour = cell.getColour();
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getRed() / 255f);
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getGreen() / 255f);
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getBlue() / 255f);
-            } else {
-                inputs[i++] = 0f;
-                inputs[i++] = 0f;
-                inputs[i++] = 0f;
+            float x = p.getPos().getX();
+            float y = p.getPos().getY();
+            float r = p.getRadius();
+            int chemicalX1 = chemicalSolution.toChemicalGridX(x - r);
+            int chemicalX2 = chemicalSolution.toChemicalGridX(x + r);
+            int chemicalY1 = chemicalSolution.toChemicalGridY(y - r);
+            int chemicalY2 = chemicalSolution.toChemicalGridY(y + r);
+            int chemicalX = chemicalSolution.toChemicalGridX(x);
+            int chemicalY = chemicalSolution.toChemicalGridY(y);
+            for (int c = 0; c < chemicalSolution.getNumChannels(); c++) {
+                inputs[i++] = chemicalSolution.getDensity(c, chemicalX1, chemicalY1) -
+                        chemicalSolution.getDensity(c, chemicalX2, chemicalY2);
+                inputs[i++] = chemicalSolution.getDensity(c, chemicalX1, chemicalY2) -
+                        chemicalSolution.getDensity(c, chemicalX2, chemicalY1);
+                inputs[i++] = 2 * chemicalSolution.getDensity(c, chemicalX, chemicalY) - 1;
             }
         }
 
+        p.getRetina().writeSensorInputs(inputs, i);
+
         network.setInput(inputs);
         network.tick();
         outputs = network.outputs();
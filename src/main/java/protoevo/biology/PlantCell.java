@@ -4,12 +4,14 @@ import protoevo.core.ChunkManager;
 import protoevo.core.Particle;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.core.StatSchema;
+import protoevo.env.Chemical;
+import protoevo.env.ChemicalSolution;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.util.Iterator;
-import java.util.Map;
 
 public class PlantCell extends EdibleCell {
     public static final long serialVersionUID = -3975433688803760076L;
@@ -29,7 +31,7 @@ public class PlantCell extends EdibleCell {
         float range = Settings.maxPlantBirthRadius - radius;
         maxRadius = (float) (radius + range * Simulation.RANDOM.nextDouble());
 
-        setHealthyColour(new Color(
+        setHealthyColour(Colour.rgb(
                 30 + Simulation.RANDOM.nextInt(105),
                 150  + Simulation.RANDOM.nextInt(100),
                 10  + Simulation.RANDOM.nextInt(100))
@@ -112,6 +114,12 @@ public class PlantCell extends EdibleCell {
             burst(PlantCell.class, r -> new PlantCell(r, getTank()));
     }
 
+    @Override
+    public void depositChemicals(float delta, ChemicalSolution chemicalSolution) {
+        float k = Settings.plantPheromoneDeposit;
+        chemicalSolution.deposit(Chemical.PLANT_PHEROMONE, getPos(), delta * k * getRadius() * getHealth());
+    }
+
     /**
      * <a href="https://www.desmos.com/calculator/hmhjwdk0jc">Desmos Graph</a>
      * @return The growth rate based on the crowding and current radius.
@@ -121,11 +129,14 @@ public class PlantCell extends EdibleCell {
         return plantGrowth;
     }
 
-    public Map<String, Float> getStats() {
-        Map<String, Float> stats = super.getStats();
-        stats.put("Crowding Factor", crowdingFactor);
-        stats.put("Split Radius", Settings.statsDistanceScalar * maxRadius);
-        return stats;
+    private static final int STAT_CROWDING_FACTOR = StatSchema.register("Crowding Factor");
+    private static final int STAT_SPLIT_RADIUS = StatSchema.register("Split Radius");
+
+    @Override
+    public void writeStats(float[] stats) {
+        super.writeStats(stats);
+        stats[STAT_CROWDING_FACTOR] = crowdingFactor;
+        stats[STAT_SPLIT_RADIUS] = Settings.statsDistanceScalar * maxRadius;
     }
 
     @Override
@@ -1,11 +1,12 @@
 package protoevo.biology;
 
-import protoevo.biology.genes.CAMProductionGene;
 import protoevo.biology.genes.ProtozoaGenome;
-import protoevo.biology.genes.RetinalProductionGene;
 import protoevo.core.*;
+import protoevo.env.Chemical;
+import protoevo.env.ChemicalSolution;
 import protoevo.env.Tank;
 import protoevo.neat.NeuralNetwork;
+import protoevo.neat.SpeciesIndex;
 import protoevo.utils.Vector2;
 
 import java.io.Serializable;
@@ -67,6 +68,10 @@ public class Protozoan extends Cell
 	private final Spike[] spikes;
 	public boolean wasJustDamaged = false;
 	private float cosHalfFov;
+	private int neighbourCount = 0;
+	private int species = SpeciesIndex.NO_SPECIES;
+	private int lineageId = Phylogeny.NO_ID, parentLineageId = Phylogeny.NO_ID, mateLineageId = Phylogeny.NO_ID;
+	private int crossOverLineageId = Phylogeny.NO_ID;
 
 	public Protozoan(ProtozoaGenome genome, Tank tank) throws MiscarriageException
 	{
@@ -101,12 +106,12 @@ public class Protozoan extends Cell
 
 		setComplexMoleculeProductionRate(
 				Food.ComplexMolecule.Retinal,
-				genome.getGeneValue(RetinalProductionGene.class));
+				genome.getFloat(ProtozoaGenome.RETINAL_PRODUCTION_GENE));
 
 		if (retina.numberOfCells() > 0)
 			addConstructionProject(retina.getConstructionProject());
 
-		Map<CellAdhesion.CellAdhesionMolecule, Float> camProduction = genome.getGeneValue(CAMProductionGene.class);
+		Map<CellAdhesion.CellAdhesionMolecule, Float> camProduction = genome.getGeneValue(ProtozoaGenome.CAM_PRODUCTION_GENE);
 		if (camProduction != null)
 			for (CellAdhesion.CellAdhesionMolecule cam : camProduction.keySet())
 				setCAMProductionRate(cam, camProduction.get(cam));
@@ -238,6 +243,9 @@ public class Protozoan extends Cell
 		float stuntingFactor = r / getRadius();
 		Protozoan child = genome.createChild(getTank(), crossOverGenome);
 		child.setRadius(stuntingFactor * child.getRadius());
+		child.species = species;
+		child.parentLineageId = lineageId;
+		child.mateLineageId = crossOverGenome == null ? Phylogeny.NO_ID : crossOverLineageId;
 		return child;
 	}
 
@@ -292,8 +300,10 @@ public class Protozoan extends Cell
 						mate = p;
 					} else {
 						timeMating += delta;
-						if (timeMating >= Settings.matingTime)
+						if (timeMating >= Settings.matingTime) {
 							crossOverGenome = p.getGenome();
+							crossOverLineageId = p.lineageId;
+						}
 					}
 				}
 			}
@@ -322,7 +332,28 @@ public class Protozoan extends Cell
 		ChunkManager chunkManager = getTank().getChunkManager();
 		Iterator<Collidable> entities = chunkManager
 				.broadCollisionDetection(getPos(), getInteractRange());
-		entities.forEachRemaining(e -> interact(e, delta));
+		int neighbours = 0;
+		while (entities.hasNext()) {
+			interact(entities.next(), delta);
+			neighbours++;
+		}
+		neighbourCount = neighbours;
+	}
+
+	/**
+	 * Estimated from the number of neighbours found on the previous tick,
+	 * each of which is also traced against every retina cell.
+	 */
+	@Override
+	public float getUpdateCost() {
+		int rays = retina.numberOfCells() > 0 && retina.getHealth() > 0 ? retina.numberOfCells() : 0;
+		return 1 + neighbourCount * (1 + rays);
+	}
+
+	@Override
+	public void depositChemicals(float delta, ChemicalSolution chemicalSolution) {
+		float k = Settings.protozoaPheromoneDeposit;
+		chemicalSolution.deposit(Chemical.PROTOZOA_PHEROMONE, getPos(), delta * k * getRadius() * getHealth());
 	}
 
 	private void breakIntoPellets() {
@@ -341,29 +372,46 @@ public class Protozoan extends Cell
 		return "Protozoan";
 	}
 
+	private static final int STAT_DEATH_RATE = StatSchema.register("Death Rate");
+	private static final int STAT_SPLIT_RADIUS = StatSchema.register("Split Radius");
+	private static final int STAT_MAX_TURNING = StatSchema.register("Max Turning");
+	private static final int STAT_MUTATIONS = StatSchema.register("Mutations");
+	private static final int STAT_GENETIC_SIZE = StatSchema.register("Genetic Size");
+	private static final int STAT_HAS_MATED = StatSchema.register("Has Mated");
+	private static final int STAT_NUM_SPIKES = StatSchema.register("Num Spikes");
+	private static final int STAT_NETWORK_DEPTH = StatSchema.register("Network Depth");
+	private static final int STAT_NETWORK_SIZE = StatSchema.register("Network Size");
+	private static final int STAT_ACTIVE_NETWORK_SIZE = StatSchema.register("Active Network Size");
+	private static final int STAT_ACTIVE_CONNECTIONS = StatSchema.register("Active Network Connections");
+	private static final int STAT_RETINA_CELLS = StatSchema.register("Retina Cells");
+	private static final int STAT_RETINA_FOV = StatSchema.register("Retina FoV");
+	private static final int STAT_RETINA_HEALTH = StatSchema.register("Retina Health");
+	private static final int STAT_HERBIVORE_FACTOR = StatSchema.register("Herbivore Factor");
+
 	@Override
-	public Map<String, Float> getStats() {
-		Map<String, Float> stats = super.getStats();
-		stats.put("Death Rate", 100 * deathRate);
-		stats.put("Split Radius", Settings.statsDistanceScalar * splitRadius);
-		stats.put("Max Turning", genome.getMaxTurn());
-		stats.put("Mutations", (float) genome.getNumMutations());
-		stats.put("Genetic Size", Settings.statsDistanceScalar * genome.getRadius());
-		stats.put("Has Mated", crossOverGenome == null ? 0f : 1f);
+	public void writeStats(float[] stats) {
+		super.writeStats(stats);
+		stats[STAT_DEATH_RATE] = 100 * deathRate;
+		stats[STAT_SPLIT_RADIUS] = Settings.statsDistanceScalar * splitRadius;
+		stats[STAT_MAX_TURNING] = genome.getMaxTurn();
+		stats[STAT_MUTATIONS] = genome.getNumMutations();
+		stats[STAT_GENETIC_SIZE] = Settings.statsDistanceScalar * genome.getRadius();
+		stats[STAT_HAS_MATED] = crossOverGenome == null ? 0f : 1f;
 		if (spikes.length > 0)
-			stats.put("Num Spikes", (float) spikes.length);
+			stats[STAT_NUM_SPIKES] = spikes.length;
 		if (brain instanceof NNBrain) {
 			NeuralNetwork nn = ((NNBrain) brain).network;
-			stats.put("Network Depth", (float) nn.getDepth());
-			stats.put("Network Size", (float) nn.getSize());
+			stats[STAT_NETWORK_DEPTH] = nn.getDepth();
+			stats[STAT_NETWORK_SIZE] = nn.getSize();
+			stats[STAT_ACTIVE_NETWORK_SIZE] = nn.getActiveSize();
+			stats[STAT_ACTIVE_CONNECTIONS] = nn.getActiveConnections();
 		}
 		if (retina.numberOfCells() > 0) {
-			stats.put("Retina Cells", (float) retina.numberOfCells());
-			stats.put("Retina FoV", (float) Math.toDegrees(retina.getFov()));
-			stats.put("Retina Health", retina.getHealth());
+			stats[STAT_RETINA_CELLS] = retina.numberOfCells();
+			stats[STAT_RETINA_FOV] = (float) Math.toDegrees(retina.getFov());
+			stats[STAT_RETINA_HEALTH] = retina.getHealth();
 		}
-		stats.put("Herbivore Factor", herbivoreFactor);
-		return stats;
+		stats[STAT_HERBIVORE_FACTOR] = herbivoreFactor;
 	}
 
 	@Override
@@ -428,6 +476,36 @@ public class Protozoan extends Cell
 		return genome;
 	}
 
+	/**
+	 * @return the id of the protozoan's species, or of its parent's species until it has been added to the tank
+	 */
+	public int getSpecies() {
+		return species;
+	}
+
+	public void setSpecies(int species) {
+		this.species = species;
+	}
+
+	/**
+	 * @return the protozoan's id in the tank's phylogeny, or {@link Phylogeny#NO_ID} until it has been added to the tank
+	 */
+	public int getLineageId() {
+		return lineageId;
+	}
+
+	public void setLineageId(int lineageId) {
+		this.lineageId = lineageId;
+	}
+
+	public int getParentLineageId() {
+		return parentLineageId;
+	}
+
+	public int getMateLineageId() {
+		return mateLineageId;
+	}
+
 	public float getShieldFactor() {
 		return shieldFactor;
 	}
@@ -2,9 +2,9 @@ package protoevo.biology;
 
 import com.google.common.collect.Iterators;
 import protoevo.core.Settings;
+import protoevo.utils.Colour;
 import protoevo.utils.Vector2;
 
-import java.awt.Color;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -19,7 +19,7 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 	public static class Cell implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private final float angle;
-		private final Color[] colours;
+		private final int[] colours;
 		private final float[] weights, lengths;
 		private final Vector2[] rays;
 		private final RetinaConstructionProject constructionProject;
@@ -31,7 +31,7 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 			if (cellFov > Settings.minRetinaRayAngle)
 				nRays = (int) (cellFov / Settings.minRetinaRayAngle);
 
-			colours = new Color[nRays];
+			colours = new int[nRays];
 			weights = new float[nRays];
 			lengths = new float[nRays];
 			rays = new Vector2[nRays];
@@ -45,12 +45,12 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		}
 
 		public void reset() {
-			Arrays.fill(colours, null);
+			Arrays.fill(colours, 0);
 			Arrays.fill(weights, 0);
 			Arrays.fill(lengths, Float.MAX_VALUE);
 		}
 
-		public void set(int idx, Color c, float sqLen) {
+		public void set(int idx, int c, float sqLen) {
 			colours[idx] = c;
 			lengths[idx] = sqLen;
 			weights[idx] = 1f;
@@ -60,36 +60,78 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 			return rays;
 		}
 
-		public Color getColour() {
+		/**
+		 * @return the average colour seen by the rays, packed as ARGB
+		 */
+		public int getColour() {
 			float r = 0;
 			float g = 0;
 			float b = 0;
 			int nEntities = 0;
 			float constructionProgress = constructionProject.getProgress();
 			for (int i = 0; i < colours.length; i++) {
-				if (colours[i] != null) {
+				if (weights[i] > 0) {
 					float w = constructionProgress * weights[i];
-					r += w * colours[i].getRed();
-					g += w * colours[i].getGreen();
-					b += w * colours[i].getBlue();
+					r += w * Colour.red(colours[i]);
+					g += w * Colour.green(colours[i]);
+					b += w * Colour.blue(colours[i]);
 					nEntities++;
 				}
 			}
 
 			if (nEntities == 0)
-				return new Color(0, 0, 0);
+				return Colour.BLACK;
 
-			return new Color(
+			return Colour.argb(
+					(int) (255 * constructionProgress),
 					(int) (r / nEntities),
 					(int) (g / nEntities),
-					(int) (b / nEntities),
-					(int) (255 * constructionProgress)
+					(int) (b / nEntities)
 			);
 		}
 
+		/**
+		 * Writes the cell's sensor inputs to {@code inputs} starting at {@code offset}: the average red,
+		 * green and blue seen by its rays, each scaled to [-1, 1], and, if {@code depth} is set, how close
+		 * the nearest thing seen is, from 0 at the edge of the interaction range to 1 when touching.
+		 * Every input is multiplied by {@code scale}, and is 0 if nothing is visible.
+		 * @return the offset after the last input written
+		 */
+		public int writeSensorInputs(float[] inputs, int offset, float scale, boolean depth) {
+			float r = 0, g = 0, b = 0, minSqLen = Float.MAX_VALUE;
+			int nEntities = 0;
+			for (int i = 0; i < colours.length; i++) {
+				float w = weights[i];
+				if (w > 0) {
+					int c = colours[i];
+					r += w * ((c >> 16) & 0xFF);
+					g += w * ((c >> 8) & 0xFF);
+					b += w * (c & 0xFF);
+					minSqLen = Math.min(minSqLen, lengths[i]);
+					nEntities++;
+				}
+			}
+
+			if (nEntities == 0) {
+				int end = offset + (depth ? 4 : 3);
+				Arrays.fill(inputs, offset, end, 0f);
+				return end;
+			}
+
+			float k = 2 * constructionProject.getProgress() / (255f * nEntities);
+			inputs[offset++] = scale * (-1 + k * r);
+			inputs[offset++] = scale * (-1 + k * g);
+			inputs[offset++] = scale * (-1 + k * b);
+			if (depth) {
+				float distance = (float) Math.sqrt(minSqLen) / Settings.protozoaInteractRange;
+				inputs[offset++] = scale * Math.max(0f, 1 - distance);
+			}
+			return offset;
+		}
+
 		public boolean anythingVisible() {
-			for (Color c : colours)
-				if (c != null)
+			for (float w : weights)
+				if (w > 0)
 					return true;
 			return false;
 		}
@@ -99,7 +141,7 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		}
 
 		public boolean rayIntersectedEntity(int rayIndex) {
-			return colours[rayIndex] != null;
+			return weights[rayIndex] > 0;
 		}
 
 		public float collisionSqLen(int rayIndex) {
@@ -221,6 +263,22 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		return (float) (1 + Math.tanh(-k*(Math.sqrt(sqLen) - dMin))) / 2f;
 	}
 
+	/**
+	 * Writes the sensor inputs of every retina cell in order, scaled by the retina's health.
+	 * @return the offset after the last input written
+	 * @see Cell#writeSensorInputs(float[], int, float, boolean)
+	 */
+	public int writeSensorInputs(float[] inputs, int offset) {
+		float retinaHealth = getHealth();
+		for (Cell cell : cells)
+			offset = cell.writeSensorInputs(inputs, offset, retinaHealth, Settings.retinaDepthSensors);
+		return offset;
+	}
+
+	public static int sensorsPerCell() {
+		return Settings.retinaDepthSensors ? 4 : 3;
+	}
+
 	public static String retinaCellLabel(int idx) {
 		return "Retina Sensor " + idx;
 	}
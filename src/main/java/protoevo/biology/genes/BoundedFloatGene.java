@@ -6,6 +6,7 @@ import java.io.Serializable;
 
 public abstract class BoundedFloatGene extends Gene<Float> implements Serializable {
     float minValue, maxValue;
+    private float floatValue;
 
     public BoundedFloatGene(float minValue, float maxValue) {
         this.minValue = minValue;
@@ -19,6 +20,16 @@ public abstract class BoundedFloatGene extends Gene<Float> implements Serializab
         setValue(value);
     }
 
+    @Override
+    public void setValue(Float value) {
+        super.setValue(value);
+        floatValue = value;
+    }
+
+    public float getFloatValue() {
+        return floatValue;
+    }
+
     @Override
     public Float getNewValue() {
         return minValue + (maxValue - minValue) * Simulation.RANDOM.nextFloat();
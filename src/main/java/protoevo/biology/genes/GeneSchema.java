@@ -0,0 +1,47 @@
+package protoevo.biology.genes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry giving each type of gene a fixed slot in a genome's gene array, so that genes can be looked up
+ * by index rather than by searching the genome for a gene of the right class. Slots are assigned in the
+ * order gene types are registered, which happens once when the genome class is loaded.
+ */
+public final class GeneSchema {
+
+    private static final List<Class<?>> geneTypes = new ArrayList<>();
+    private static final Map<Class<?>, Integer> slots = new ConcurrentHashMap<>();
+
+    private GeneSchema() {}
+
+    /**
+     * @return the slot of the gene type, which is assigned the next free slot if it has not been registered before
+     */
+    public static synchronized int register(Class<? extends Gene<?>> geneType) {
+        Integer slot = slots.get(geneType);
+        if (slot != null)
+            return slot;
+        geneTypes.add(geneType);
+        slots.put(geneType, geneTypes.size() - 1);
+        return geneTypes.size() - 1;
+    }
+
+    /**
+     * @return the slot of the gene type, or -1 if it has not been registered
+     */
+    public static int slotOf(Class<?> geneType) {
+        Integer slot = slots.get(geneType);
+        return slot == null ? -1 : slot;
+    }
+
+    public static synchronized int size() {
+        return geneTypes.size();
+    }
+
+    public static synchronized Class<?> geneType(int slot) {
+        return geneTypes.get(slot);
+    }
+}
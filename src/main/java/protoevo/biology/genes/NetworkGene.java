@@ -29,9 +29,7 @@ public class NetworkGene extends Gene<NetworkGenome> implements Serializable {
 
     @Override
     public NetworkGenome getNewValue() {
-        NetworkGenome networkGenome = new NetworkGenome(getValue());
-        networkGenome.mutate();
-        return networkGenome;
+        return getValue().mutate();
     }
 
     @Override
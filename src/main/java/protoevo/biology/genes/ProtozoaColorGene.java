@@ -2,23 +2,23 @@ package protoevo.biology.genes;
 
 
 import protoevo.core.Simulation;
+import protoevo.utils.Colour;
 
-import java.awt.*;
 import java.io.Serializable;
 
-public class ProtozoaColorGene extends Gene<Color> implements Serializable {
+public class ProtozoaColorGene extends Gene<Integer> implements Serializable {
     public static final long serialVersionUID = -1821863048303900554L;
 
     public ProtozoaColorGene() {
         super();
     }
 
-    public ProtozoaColorGene(Color value) {
+    public ProtozoaColorGene(Integer value) {
         super(value);
     }
 
     @Override
-    public <G extends Gene<Color>> G createNew(Color value) {
+    public <G extends Gene<Integer>> G createNew(Integer value) {
         return (G) new ProtozoaColorGene(value);
     }
 
@@ -28,17 +28,17 @@ public class ProtozoaColorGene extends Gene<Color> implements Serializable {
     }
 
     @Override
-    public Color disabledValue() {
-        return Color.WHITE.darker();
+    public Integer disabledValue() {
+        return Colour.darker(Colour.WHITE);
     }
 
     @Override
-    public Color getNewValue() {
-        Color color = getValue();
+    public Integer getNewValue() {
+        Integer color = getValue();
         int minVal = 80;
         int maxVal = 150;
         if (color == null)
-            return new Color(
+            return Colour.rgb(
                 minVal + Simulation.RANDOM.nextInt(maxVal),
                 minVal + Simulation.RANDOM.nextInt(maxVal),
                 minVal + Simulation.RANDOM.nextInt(maxVal)
@@ -46,23 +46,24 @@ public class ProtozoaColorGene extends Gene<Color> implements Serializable {
 
         float p = Simulation.RANDOM.nextFloat();
         int valChange = -15 + Simulation.RANDOM.nextInt(30);
+        int r = Colour.red(color), g = Colour.green(color), b = Colour.blue(color);
 
         if (p < 1 / 3f) {
-            int v = Math.max(Math.min(color.getRed() + valChange, maxVal), minVal);
-            return new Color(v, color.getGreen(), color.getBlue());
+            int v = Math.max(Math.min(r + valChange, maxVal), minVal);
+            return Colour.rgb(v, g, b);
         } else if (p < 2 / 3f) {
-            int v = Math.max(Math.min(color.getGreen() + valChange, maxVal), minVal);
-            return new Color(color.getRed(), v, color.getBlue());
+            int v = Math.max(Math.min(g + valChange, maxVal), minVal);
+            return Colour.rgb(r, v, b);
         } else {
-            int v = Math.max(Math.min(color.getBlue() + valChange, maxVal), minVal);
-            return new Color(color.getRed(), color.getGreen(), v);
+            int v = Math.max(Math.min(b + valChange, maxVal), minVal);
+            return Colour.rgb(r, g, v);
         }
     }
 
     @Override
     public String valueString() {
-        Color value = getValue();
-        return value.getRed() + ";" + value.getGreen() + ";" + value.getBlue();
+        int value = getValue();
+        return Colour.red(value) + ";" + Colour.green(value) + ";" + Colour.blue(value);
     }
 
     @Override
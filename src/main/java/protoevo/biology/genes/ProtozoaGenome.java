@@ -3,11 +3,11 @@ package protoevo.biology.genes;
 import protoevo.biology.*;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.env.Chemical;
 import protoevo.env.Tank;
 import protoevo.neat.NetworkGenome;
 import protoevo.neat.NeuralNetwork;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.Arrays;
 
@@ -25,6 +25,20 @@ public class ProtozoaGenome implements Serializable
     private int parent1Hash = 0;
     private int parent2Hash = 0;
 
+    // Slot of each gene in the genes array
+    public static final int NETWORK_GENE = GeneSchema.register(NetworkGene.class);
+    public static final int COLOUR_GENE = GeneSchema.register(ProtozoaColorGene.class);
+    public static final int RETINA_SIZE_GENE = GeneSchema.register(RetinaSizeGene.class);
+    public static final int FOV_GENE = GeneSchema.register(ProtozoaFOVGene.class);
+    public static final int GROWTH_RATE_GENE = GeneSchema.register(ProtozoaGrowthRateGene.class);
+    public static final int MAX_TURN_GENE = GeneSchema.register(ProtozoaMaxTurnGene.class);
+    public static final int RADIUS_GENE = GeneSchema.register(ProtozoaRadiusGene.class);
+    public static final int SPIKES_GENE = GeneSchema.register(ProtozoaSpikesGene.class);
+    public static final int SPLIT_RADIUS_GENE = GeneSchema.register(ProtozoaSplitRadiusGene.class);
+    public static final int HERBIVORE_FACTOR_GENE = GeneSchema.register(HerbivoreFactorGene.class);
+    public static final int RETINAL_PRODUCTION_GENE = GeneSchema.register(RetinalProductionGene.class);
+    public static final int CAM_PRODUCTION_GENE = GeneSchema.register(CAMProductionGene.class);
+
     public ProtozoaGenome(ProtozoaGenome parentGenome) {
         mutationChance = parentGenome.mutationChance;
         genes = Arrays.copyOf(parentGenome.genes, parentGenome.genes.length);
@@ -33,38 +47,39 @@ public class ProtozoaGenome implements Serializable
 
     public ProtozoaGenome()
     {
-        NetworkGenome networkGenome = new NetworkGenome();
-        networkGenome.addOutput("Turn Amount");
-        networkGenome.addOutput("Speed");
-        networkGenome.addOutput("Mate Desire");
-        networkGenome.addOutput("Attack");
-
-        networkGenome.addSensor("Bias");
-        networkGenome.addSensor("Health");
-        networkGenome.addSensor("Size");
-        networkGenome.addSensor("Mass Available");
+        NetworkGenome networkGenome = new NetworkGenome()
+                .addOutput("Turn Amount")
+                .addOutput("Speed")
+                .addOutput("Mate Desire")
+                .addOutput("Attack")
+                .addSensor(NetworkGenome.BIAS_SENSOR)
+                .addSensor("Health")
+                .addSensor("Size")
+                .addSensor("Mass Available");
         for (int i = 0; i < Settings.numContactSensors; i++)
-            networkGenome.addSensor("Contact Sensor " + i);
+            networkGenome = networkGenome.addSensor("Contact Sensor " + i);
         if (Settings.enableChemicalField) {
-            networkGenome.addSensor("Pheromone Gradient X");
-            networkGenome.addSensor("Pheromone Gradient Y");
-            networkGenome.addSensor("Pheromone Amount");
+            for (Chemical chemical : Chemical.getRegisteredChemicals()) {
+                networkGenome = networkGenome
+                        .addSensor(chemical.getName() + " Gradient X")
+                        .addSensor(chemical.getName() + " Gradient Y")
+                        .addSensor(chemical.getName() + " Amount");
+            }
         }
 
-        genes = new Gene<?>[]{
-                new NetworkGene(networkGenome),
-                new ProtozoaColorGene(),
-                new RetinaSizeGene(),
-                new ProtozoaFOVGene(),
-                new ProtozoaGrowthRateGene(),
-                new ProtozoaMaxTurnGene(),
-                new ProtozoaRadiusGene(),
-                new ProtozoaSpikesGene(),
-                new ProtozoaSplitRadiusGene(),
-                new HerbivoreFactorGene(),
-                new RetinalProductionGene(),
-                new CAMProductionGene()
-        };
+        genes = new Gene<?>[GeneSchema.size()];
+        genes[NETWORK_GENE] = new NetworkGene(networkGenome);
+        genes[COLOUR_GENE] = new ProtozoaColorGene();
+        genes[RETINA_SIZE_GENE] = new RetinaSizeGene();
+        genes[FOV_GENE] = new ProtozoaFOVGene();
+        genes[GROWTH_RATE_GENE] = new ProtozoaGrowthRateGene();
+        genes[MAX_TURN_GENE] = new ProtozoaMaxTurnGene();
+        genes[RADIUS_GENE] = new ProtozoaRadiusGene();
+        genes[SPIKES_GENE] = new ProtozoaSpikesGene();
+        genes[SPLIT_RADIUS_GENE] = new ProtozoaSplitRadiusGene();
+        genes[HERBIVORE_FACTOR_GENE] = new HerbivoreFactorGene();
+        genes[RETINAL_PRODUCTION_GENE] = new RetinalProductionGene();
+        genes[CAM_PRODUCTION_GENE] = new CAMProductionGene();
 
         ensureCorrectness();
     }
@@ -74,8 +89,8 @@ public class ProtozoaGenome implements Serializable
     }
 
     public static int expectedNetworkInputSize(int retinaSize) {
-        int chemicalGradientInputs = Settings.enableChemicalField ? 3 : 0;
-        return 3 * retinaSize
+        int chemicalGradientInputs = Settings.enableChemicalField ? 3 * Chemical.numChemicals() : 0;
+        return Retina.sensorsPerCell() * retinaSize
                 + nonVisualSensorSize
                 + chemicalGradientInputs
                 + 1 + Settings.numContactSensors;
@@ -83,7 +98,7 @@ public class ProtozoaGenome implements Serializable
 
     public ProtozoaGenome(Gene<?>[] genes) {
         this.genes = genes;
-        NetworkGenome networkGenome = getGeneValue(NetworkGene.class);
+        NetworkGenome networkGenome = getGeneValue(NETWORK_GENE);
         if (networkGenome != null)
             ensureCorrectness();
     }
@@ -107,9 +122,18 @@ public class ProtozoaGenome implements Serializable
         return mutatedGenome.ensureCorrectness();
     }
 
+    /**
+     * Replaces the network gene with one that has sensors for every retina cell, if it is missing any.
+     * Network genomes are immutable, so this never changes the network of the genome this one came from.
+     */
     public ProtozoaGenome ensureCorrectness() {
-        int retinaSize = getGeneValue(RetinaSizeGene.class);
-        getGeneValue(NetworkGene.class).ensureRetinaSensorsExist(retinaSize);
+        int retinaSize = getGeneValue(RETINA_SIZE_GENE);
+        NetworkGene networkGene = (NetworkGene) genes[NETWORK_GENE];
+        if (!networkGene.isDisabled()) {
+            NetworkGenome networkGenome = networkGene.getValue().ensureRetinaSensorsExist(retinaSize);
+            if (networkGenome != networkGene.getValue())
+                genes[NETWORK_GENE] = networkGene.createNew(networkGenome);
+        }
         return this;
     }
 
@@ -121,29 +145,39 @@ public class ProtozoaGenome implements Serializable
     }
 
     public <T> T getGeneValue(Class<? extends Gene<T>> clazz) {
-        for (Gene<?> gene : genes)
-            if (clazz.isInstance(gene)) {
-                return gene.isDisabled() ?
-                        clazz.cast(gene).disabledValue() :
-                        clazz.cast(gene).getValue();
-            }
-        return null;
+        int slot = GeneSchema.slotOf(clazz);
+        return slot < 0 ? null : getGeneValue(slot);
+    }
+
+    /**
+     * @return the value of the gene in the given slot, or its disabled value if it is disabled
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getGeneValue(int slot) {
+        Gene<T> gene = (Gene<T>) genes[slot];
+        return gene.isDisabled() ? gene.disabledValue() : gene.getValue();
+    }
+
+    /**
+     * @return the value of the float gene in the given slot, or its disabled value if it is disabled,
+     * without boxing it unless it is disabled
+     */
+    public float getFloat(int slot) {
+        BoundedFloatGene gene = (BoundedFloatGene) genes[slot];
+        return gene.isDisabled() ? gene.disabledValue() : gene.getFloatValue();
     }
 
     public Brain brain() throws MiscarriageException {
         float maxTurn = getMaxTurn();
-        NetworkGenome networkGenome = getGeneValue(NetworkGene.class);
+        NetworkGenome networkGenome = getGeneValue(NETWORK_GENE);
         if (networkGenome == null)
             return Brain.EMPTY;
 
         try {
-            NeuralNetwork nn = networkGenome.phenotype();
             int expInpSize = expectedNetworkInputSize(retina().numberOfCells());
-            if (nn.getInputSize() < expInpSize)
+            if (networkGenome.numberOfSensors() < expInpSize)
                 throw new MiscarriageException();
-            else if (nn.getInputSize() > expInpSize) {
-                nn.disableInputsFrom(expInpSize);
-            }
+            NeuralNetwork nn = networkGenome.phenotype(expInpSize);
             return new NNBrain(nn, maxTurn);
         } catch (IllegalArgumentException e) {
             throw new MiscarriageException();
@@ -152,26 +186,22 @@ public class ProtozoaGenome implements Serializable
 
     public Retina retina()
     {
-        int retinaSize = getGeneValue(RetinaSizeGene.class);
-        float fov = getGeneValue(ProtozoaFOVGene.class);
+        int retinaSize = getGeneValue(RETINA_SIZE_GENE);
+        float fov = getFloat(FOV_GENE);
         return new Retina(retinaSize, fov);
     }
 
-    public float getFloatGeneValue(Class<? extends Gene<Float>> clazz) {
-        return getGeneValue(clazz);
-    }
-
     public float getRadius()
     {
-        return getFloatGeneValue(ProtozoaRadiusGene.class);
+        return getFloat(RADIUS_GENE);
     }
 
     public float getGrowthRate() {
-        return getFloatGeneValue(ProtozoaGrowthRateGene.class);
+        return getFloat(GROWTH_RATE_GENE);
     }
 
     public float getSplitRadius() {
-        return getFloatGeneValue(ProtozoaSplitRadiusGene.class);
+        return getFloat(SPLIT_RADIUS_GENE);
     }
 
 
@@ -195,8 +225,8 @@ public class ProtozoaGenome implements Serializable
         return childGenome.mutate().phenotype(tank);
     }
 
-    public Color getColour() {
-        return getGeneValue(ProtozoaColorGene.class);
+    public int getColour() {
+        return getGeneValue(COLOUR_GENE);
     }
 
     public int getNumMutations() {
@@ -207,15 +237,15 @@ public class ProtozoaGenome implements Serializable
     }
 
     public Protozoan.Spike[] getSpikes() {
-        return getGeneValue(ProtozoaSpikesGene.class);
+        return getGeneValue(SPIKES_GENE);
     }
 
     public float getMaxTurn() {
-        return getFloatGeneValue(ProtozoaMaxTurnGene.class);
+        return getFloat(MAX_TURN_GENE);
     }
 
     public float getHerbivoreFactor() {
-        return getGeneValue(HerbivoreFactorGene.class);
+        return getFloat(HERBIVORE_FACTOR_GENE);
     }
 
     @Override
@@ -41,11 +41,7 @@ public class ProtozoaSpikesGene extends Gene<Protozoan.Spike[]> implements Seria
     }
 
     private float getProtozoaMaxRadius(Gene<?>[] genome) {
-        float radius = -1;
-        for (Gene<?> gene : genome)
-            if (gene instanceof ProtozoaRadiusGene)
-                radius = (float) gene.getValue();
-        return radius;
+        return ((BoundedFloatGene) genome[ProtozoaGenome.RADIUS_GENE]).getFloatValue();
     }
 
     private float randomSpikeLength(float maxProtozoaRadius) {
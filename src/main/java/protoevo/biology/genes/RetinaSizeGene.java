@@ -5,9 +5,7 @@ import protoevo.biology.Retina;
 import protoevo.core.Settings;
 import protoevo.neat.NetworkGenome;
 
-import javax.swing.text.html.Option;
 import java.io.Serializable;
-import java.util.Optional;
 
 public class RetinaSizeGene extends Gene<Integer> implements Serializable {
     public static final long serialVersionUID = -4191267363677698742L;
@@ -46,24 +44,10 @@ public class RetinaSizeGene extends Gene<Integer> implements Serializable {
         return 0;
     }
 
-    private Optional<Integer> findNetworkGene(Gene<?>[] genes) {
-        for (int i = 0; i < genes.length; i++) {
-            Gene<?> gene = genes[i];
-            if (gene instanceof NetworkGene)
-                return Optional.of(i);
-        }
-        return Optional.empty();
-    }
-
     private void addNetworkSensors(Gene<?>[] genes, int newRetinaSize) {
-
-        int i = findNetworkGene(genes).orElseThrow(() -> new RuntimeException("No Network Gene found"));
-        NetworkGene networkGene = (NetworkGene) genes[i];
-        NetworkGenome currentNetworkGenome = networkGene.getValue();
-        NetworkGenome newNetworkGenome = new NetworkGenome(currentNetworkGenome);
-        newNetworkGenome.ensureRetinaSensorsExist(newRetinaSize);
-        genes[i] = networkGene.createNew(newNetworkGenome);
-
+        NetworkGene networkGene = (NetworkGene) genes[ProtozoaGenome.NETWORK_GENE];
+        NetworkGenome newNetworkGenome = networkGene.getValue().ensureRetinaSensorsExist(newRetinaSize);
+        genes[ProtozoaGenome.NETWORK_GENE] = networkGene.createNew(newNetworkGenome);
     }
 
     @Override
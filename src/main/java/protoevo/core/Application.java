@@ -2,6 +2,7 @@ package protoevo.core;
 
 import protoevo.ui.Window;
 import protoevo.ui.components.TextStyle;
+import protoevo.ui.simulation.FrameExporter;
 import protoevo.ui.simulation.SimulationController;
 import protoevo.ui.simulation.SimulationRenderer;
 
@@ -38,8 +39,15 @@ public class Application
 		else
 			simulation = new Simulation();
 
+		FrameExporter frameExporter = null;
 		try {
-			if (!(Boolean.parseBoolean(args.getOrDefault("noui", "false")))) {
+			boolean noUI = Boolean.parseBoolean(args.getOrDefault("noui", "false"));
+			if (noUI && Settings.frameExportInterval > 0)
+				frameExporter = new FrameExporter(simulation,
+						Settings.frameExportWidth, Settings.frameExportHeight, Settings.frameExportInterval,
+						Settings.frameExportThreads, Settings.frameExportQueueSize);
+
+			if (!noUI) {
 				TextStyle.loadFonts();
 				window = new Window("Evolving Protozoa");
 				simulation.getREPL().setWindow(window);
@@ -56,6 +64,10 @@ public class Application
 			simulation.close();
 			throw e;
 		}
+		finally {
+			if (frameExporter != null)
+				frameExporter.close();
+		}
 	}
 	
 	public static void exit()
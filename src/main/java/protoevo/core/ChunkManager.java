@@ -141,12 +141,12 @@ public class ChunkManager implements Serializable {
         return chunks;
     }
 
-    public Collection<Cell> getAllCells() {
+    public List<Cell> getAllCells() {
         return entities;
     }
 
     public void update() {
-        Arrays.stream(chunks).parallel().forEach(Chunk::clear);
+        SimulationExecutor.getInstance().forEach("Clear Chunks", chunks, Chunk::clear);
 //        for (Chunk chunk : chunks)
 //            chunk.clear();
 
@@ -2,7 +2,6 @@ package protoevo.core;
 
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 
 public abstract class Collidable {
@@ -18,7 +17,10 @@ public abstract class Collidable {
     public abstract boolean rayIntersects(Vector2 start, Vector2 end);
     public abstract void rayCollisions(Vector2 start, Vector2 end, Collision[] collisions);
 
-    public abstract Color getColor();
+    /**
+     * @return the colour packed as ARGB, see {@link protoevo.utils.Colour}
+     */
+    public abstract int getColor();
 
     public abstract Vector2[] getBoundingBox();
 
@@ -2,10 +2,10 @@ package protoevo.core;
 
 import protoevo.env.Rock;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Geometry;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.Iterator;
 
@@ -281,7 +281,7 @@ public class Particle extends Collidable implements Serializable {
     }
 
     @Override
-    public Color getColor() {
-        return Color.WHITE.darker();
+    public int getColor() {
+        return Colour.darker(Colour.WHITE);
     }
 }
@@ -0,0 +1,267 @@
+package protoevo.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Family tree of the protozoa born in the tank. Each birth is a row of primitives (id, parents, birth and death
+ * times) in growable parallel arrays, so the ancestry of the living population can be queried without reading
+ * back the genome log. Ids are handed out in birth order, so the rows stay sorted by id and a parent always
+ * comes before its children.
+ * <p>
+ * Rows of dead protozoa with no living descendants are pruned on a background thread once the tree has doubled
+ * in size since it was last pruned. A pruned parent is treated as unknown, as is the parent of a protozoa that
+ * was not born in the tank.
+ */
+public class Phylogeny implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_ID = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ExecutorService pruner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "phylogeny-pruner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] parent1 = new int[INITIAL_CAPACITY];
+    private int[] parent2 = new int[INITIAL_CAPACITY];
+    private int[] depths = new int[INITIAL_CAPACITY];
+    private int[] roots = new int[INITIAL_CAPACITY];
+    private float[] birthTimes = new float[INITIAL_CAPACITY];
+    private float[] deathTimes = new float[INITIAL_CAPACITY];
+    private int size = 0, sizeAfterPruning = 0;
+    private int nextId = NO_ID + 1;
+    private long pruned = 0;
+    private transient AtomicBoolean pruning = new AtomicBoolean();
+
+    /**
+     * Records the birth of a protozoa.
+     * @param parent1 the id of the parent that split, or {@link #NO_ID}
+     * @param parent2 the id of the parent it mated with, or {@link #NO_ID}
+     * @return the id of the newborn
+     */
+    public int recordBirth(int parent1, int parent2, float time) {
+        boolean shouldPrune;
+        int id;
+        synchronized (this) {
+            if (size == ids.length)
+                grow();
+            int p1 = indexOf(parent1), p2 = indexOf(parent2);
+            id = nextId++;
+            ids[size] = id;
+            this.parent1[size] = parent1;
+            this.parent2[size] = parent2;
+            depths[size] = p1 < 0 ? 0 : depths[p1] + 1;
+            roots[size] = p1 < 0 ? (p2 < 0 ? id : roots[p2]) : roots[p1];
+            birthTimes[size] = time;
+            deathTimes[size] = Float.NaN;
+            size++;
+            shouldPrune = size >= 2 * Math.max(sizeAfterPruning, INITIAL_CAPACITY);
+        }
+        if (shouldPrune)
+            pruneInBackground();
+        return id;
+    }
+
+    public synchronized void recordDeath(int id, float time) {
+        int i = indexOf(id);
+        if (i >= 0)
+            deathTimes[i] = time;
+    }
+
+    private void grow() {
+        int capacity = 2 * ids.length;
+        ids = Arrays.copyOf(ids, capacity);
+        parent1 = Arrays.copyOf(parent1, capacity);
+        parent2 = Arrays.copyOf(parent2, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        roots = Arrays.copyOf(roots, capacity);
+        birthTimes = Arrays.copyOf(birthTimes, capacity);
+        deathTimes = Arrays.copyOf(deathTimes, capacity);
+    }
+
+    private int indexOf(int id) {
+        if (id == NO_ID)
+            return -1;
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        return i < 0 ? -1 : i;
+    }
+
+    private boolean isAlive(int i) {
+        return Float.isNaN(deathTimes[i]);
+    }
+
+    public void pruneInBackground() {
+        if (pruning.compareAndSet(false, true))
+            pruner.execute(() -> {
+                try {
+                    prune();
+                } finally {
+                    pruning.set(false);
+                }
+            });
+    }
+
+    /**
+     * Removes the rows of dead protozoa that have no living descendants. Only the copy of the rows is taken
+     * while holding the lock; births and deaths recorded while the rows to keep are worked out are not held up.
+     */
+    public void prune() {
+        int n;
+        int[] ids, parent1, parent2;
+        float[] deathTimes;
+        synchronized (this) {
+            n = size;
+            ids = Arrays.copyOf(this.ids, n);
+            parent1 = Arrays.copyOf(this.parent1, n);
+            parent2 = Arrays.copyOf(this.parent2, n);
+            deathTimes = Arrays.copyOf(this.deathTimes, n);
+        }
+
+        // Children come after their parents, so one backwards pass marks every ancestor of a living protozoa
+        boolean[] keep = new boolean[n];
+        for (int i = n - 1; i >= 0; i--) {
+            if (!keep[i] && !Float.isNaN(deathTimes[i]))
+                continue;
+            keep[i] = true;
+            int p1 = Arrays.binarySearch(ids, 0, i, parent1[i]);
+            if (p1 >= 0)
+                keep[p1] = true;
+            int p2 = Arrays.binarySearch(ids, 0, i, parent2[i]);
+            if (p2 >= 0)
+                keep[p2] = true;
+        }
+
+        // Rows are only removed here, so the first n rows are the ones copied above, and anything that died
+        // since then was alive in the copy and is kept
+        synchronized (this) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (i < n && !keep[i])
+                    continue;
+                this.ids[kept] = this.ids[i];
+                this.parent1[kept] = this.parent1[i];
+                this.parent2[kept] = this.parent2[i];
+                depths[kept] = depths[i];
+                roots[kept] = roots[i];
+                birthTimes[kept] = birthTimes[i];
+                this.deathTimes[kept] = this.deathTimes[i];
+                kept++;
+            }
+            pruned += size - kept;
+            size = kept;
+            sizeAfterPruning = kept;
+        }
+    }
+
+    /**
+     * @return the id of the latest born ancestor shared by both protozoa, which may be one of them, or
+     * {@link #NO_ID} if they have no known common ancestor
+     */
+    public synchronized int mostRecentCommonAncestor(int a, int b) {
+        BitSet ancestorsOfA = ancestors(a);
+        BitSet ancestorsOfB = ancestors(b);
+        ancestorsOfA.and(ancestorsOfB);
+        int i = ancestorsOfA.length() - 1;
+        return i < 0 ? NO_ID : ids[i];
+    }
+
+    /**
+     * @return the rows of the protozoa and all its known ancestors
+     */
+    private BitSet ancestors(int id) {
+        BitSet ancestors = new BitSet(size);
+        int i = indexOf(id);
+        if (i < 0)
+            return ancestors;
+        ancestors.set(i);
+        for (; i >= 0; i = ancestors.previousSetBit(i - 1)) {
+            int p1 = indexOf(parent1[i]);
+            if (p1 >= 0)
+                ancestors.set(p1);
+            int p2 = indexOf(parent2[i]);
+            if (p2 >= 0)
+                ancestors.set(p2);
+        }
+        return ancestors;
+    }
+
+    /**
+     * @return the number of splits between the protozoa and the earliest known ancestor in its line of descent,
+     * or -1 if it is not in the tree
+     */
+    public synchronized int lineageDepth(int id) {
+        int i = indexOf(id);
+        return i < 0 ? -1 : depths[i];
+    }
+
+    /**
+     * @return the number of living protozoa descended from the given one, including itself if it is alive
+     */
+    public synchronized int livingDescendants(int id) {
+        int from = indexOf(id);
+        if (from < 0)
+            return 0;
+        BitSet descendants = new BitSet(size);
+        descendants.set(from);
+        int living = isAlive(from) ? 1 : 0;
+        for (int i = from + 1; i < size; i++) {
+            int p1 = indexOf(parent1[i]), p2 = indexOf(parent2[i]);
+            if ((p1 >= from && descendants.get(p1)) || (p2 >= from && descendants.get(p2))) {
+                descendants.set(i);
+                if (isAlive(i))
+                    living++;
+            }
+        }
+        return living;
+    }
+
+    /**
+     * Groups the living protozoa into clades by the founder at the root of their line of descent.
+     * @return the number of living protozoa in each clade with any, by the id of its founder
+     */
+    public synchronized Map<Integer, Integer> survivingCladeSizes() {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            if (isAlive(i))
+                sizes.merge(roots[i], 1, Integer::sum);
+        return sizes;
+    }
+
+    public synchronized int numberOfLiving() {
+        int living = 0;
+        for (int i = 0; i < size; i++)
+            if (isAlive(i))
+                living++;
+        return living;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long numberPruned() {
+        return pruned;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        pruning = new AtomicBoolean();
+    }
+}
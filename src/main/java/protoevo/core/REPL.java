@@ -38,6 +38,9 @@ public class REPL implements Runnable
         commands.put("togglepause", this::pause);
         commands.put("unpause", this::pause);
         commands.put("setparam", this::setParam);
+        commands.put("poolstats", this::printPoolStats);
+        commands.put("history", this::printHistory);
+        commands.put("phylogeny", this::printPhylogeny);
     }
 
     public Boolean help(Object[] args) {
@@ -49,6 +52,10 @@ public class REPL implements Runnable
         System.out.println("gettime - Get the time dilation.");
         System.out.println("stats - Print simulation statistics.");
         System.out.println("pause - Pause the simulation.");
+        System.out.println("poolstats [reset] - Print the time spent in each parallel phase of the simulation.");
+        System.out.println("history [<from> <to>] <stat> - Print the recorded values of a statistic, " +
+                "optionally between two times. Without a statistic, lists the recorded statistics.");
+        System.out.println("phylogeny [<n>] - Print the size of the family tree and the n largest surviving clades.");
         System.out.println("setparam <param> <value> - Set a parameter. Available parameters are:");
         for (String param : Settings.paramsMap.keySet()) {
             System.out.println("\t- " + param);
@@ -107,6 +114,76 @@ public class REPL implements Runnable
         return true;
     }
 
+    public Boolean printPoolStats(Object[] args) {
+        SimulationExecutor executor = SimulationExecutor.getInstance();
+        executor.printPhaseStats();
+        if (args.length > 1 && args[1].equals("reset"))
+            executor.resetPhaseStats();
+        return true;
+    }
+
+    public Boolean printHistory(Object[] args) {
+        StatsHistory history = simulation.getStatsHistory();
+        if (history == null) {
+            System.out.println("No statistics have been recorded yet.");
+            return false;
+        }
+        if (args.length < 2) {
+            System.out.println(String.join(", ", history.getNames()));
+            return true;
+        }
+
+        float from = -Float.MAX_VALUE, to = Float.MAX_VALUE;
+        int nameStart = 1;
+        if (args.length > 3) {
+            try {
+                float parsedFrom = Float.parseFloat((String) args[1]);
+                float parsedTo = Float.parseFloat((String) args[2]);
+                from = parsedFrom;
+                to = parsedTo;
+                nameStart = 3;
+            } catch (NumberFormatException ignored) {
+                // the statistic name itself starts with the first argument
+            }
+        }
+        StringBuilder name = new StringBuilder((String) args[nameStart]);
+        for (int i = nameStart + 1; i < args.length; i++)
+            name.append(" ").append(args[i]);
+
+        float[][] points = history.query(name.toString(), from, to);
+        if (points == null) {
+            System.out.println("Unknown statistic: " + name);
+            return false;
+        }
+        System.out.println(name + " (" + points[0].length + " points, each averaging "
+                + history.resolutionFor(from) + " snapshots)");
+        for (int i = 0; i < points[0].length; i++)
+            System.out.printf("%.2f\t%.5f%n", points[0][i], points[1][i]);
+        return true;
+    }
+
+    public Boolean printPhylogeny(Object[] args) {
+        int n = 5;
+        if (args.length > 1) {
+            try {
+                n = Integer.parseInt((String) args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid argument.");
+                return false;
+            }
+        }
+        Phylogeny phylogeny = simulation.getTank().getPhylogeny();
+        Map<Integer, Integer> clades = phylogeny.survivingCladeSizes();
+        System.out.println("Recorded protozoa: " + phylogeny.size() + " (" + phylogeny.numberOfLiving()
+                + " living, " + phylogeny.numberPruned() + " pruned)");
+        System.out.println("Surviving clades: " + clades.size());
+        clades.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed())
+                .limit(n)
+                .forEach(clade -> System.out.println("\tFounder " + clade.getKey() + ": " + clade.getValue() + " living"));
+        return true;
+    }
+
     public Boolean exit(Object[] args) {
         simulation.close();
         Application.exit();
@@ -60,9 +60,19 @@ public final class Settings {
     public float spike_plant_consumption_penalty;
     public float max_particle_radius;
     public float chemicals_decay;
-
+    // No longer read; kept so that settings files which still set it, such as those in older saves, load
+    @Deprecated
     public float chemicals_flow;
+    // Boxed so that a missing value can be told apart from an explicit 0
+    public Float plant_pheromone_diffusion;
+    public Float plant_pheromone_decay;
+    public Float meat_pheromone_diffusion;
+    public Float meat_pheromone_decay;
+    public Float protozoa_pheromone_diffusion;
+    public Float protozoa_pheromone_decay;
     public float pheromones_deposit;
+    public float meat_pheromone_deposit;
+    public float protozoa_pheromone_deposit;
     public float protozoa_starvation_rate;
     public int starting_retina_size;
     public int max_retina_size;
@@ -71,9 +81,12 @@ public final class Settings {
     public float max_protozoa_growth_rate;
     public float max_plant_growth;
     public float retina_growth_cost;
+    public boolean retina_depth_sensors;
     public float cell_repair_rate;
     public float food_waste_multiplier;
     public float cam_energy_cost;
+    public int innovation_generation_window;
+    public float species_distance_threshold;
 
 
     // Performance parameters
@@ -82,15 +95,30 @@ public final class Settings {
     public int spatial_hash_resolution;
     public int chemical_field_resolution;
     public int chemical_update_interval;
+    public String chemical_solver;
+    public int chemical_solver_cycles;
     public float max_interact_range;
     public int max_protozoa;
     public int max_plants;
     public int max_meat;
+    public int simulation_threads;
+    public int parallel_grain_size;
+    public String worker_thread_name;
+
+    // Frame export
+    public int frame_export_interval;
+    public int frame_export_width;
+    public int frame_export_height;
+    public int frame_export_threads;
+    public int frame_export_queue_size;
 
     // Simulation settings
     public static final long simulationSeed = getInstance().simulation_seed == 0 ? System.currentTimeMillis() : getInstance().simulation_seed;
     public static final float simulationUpdateDelta = 5f / 1000f;
     public static final int targetFPS = getInstance().target_fps;
+    public static final int simulationThreads = getInstance().simulation_threads;
+    public static final int parallelGrainSize = getInstance().parallel_grain_size;
+    public static final String workerThreadName = getInstance().worker_thread_name;
     public static final float maxProtozoaSpeed = .01f;
     public static final float maxParticleSpeed = .05f;
     public static final float timeBetweenSaves = 2000.0f;
@@ -98,6 +126,7 @@ public final class Settings {
     public static final boolean writeGenomes = true;
     public static final boolean finishOnProtozoaExtinction = true;
     public static final int physicsSubSteps = getInstance().physics_substeps;
+    // At most 64, as cells keep a bit for each CAM signature in a long
     public static final int numPossibleCAMs = 64;
     public static final float camProductionEnergyCost = getInstance().cam_energy_cost;
     public static final float startingAvailableCellEnergy = 0.01f;
@@ -146,8 +175,23 @@ public final class Settings {
     public static final int numChemicalBreaks = getInstance().chemical_field_resolution;
     public static final float chemicalsUpdateTime = simulationUpdateDelta * getInstance().chemical_update_interval;
     public static final float chemicalsDecay = getInstance().chemicals_decay;
-    public static final float chemicalsFlow = getInstance().chemicals_flow;
+    public static final boolean implicitChemicalSolver = "implicit".equalsIgnoreCase(getInstance().chemical_solver);
+    public static final int chemicalSolverCycles = Math.max(1, getInstance().chemical_solver_cycles);
     public static final float plantPheromoneDeposit = getInstance().pheromones_deposit;
+    public static final float meatPheromoneDeposit = getInstance().meat_pheromone_deposit;
+    public static final float protozoaPheromoneDeposit = getInstance().protozoa_pheromone_deposit;
+    public static final float plantPheromoneDiffusion =
+            getInstance().plant_pheromone_diffusion != null ? getInstance().plant_pheromone_diffusion : 1.0f;
+    public static final float plantPheromoneDecay =
+            getInstance().plant_pheromone_decay != null ? getInstance().plant_pheromone_decay : chemicalsDecay;
+    public static final float meatPheromoneDiffusion =
+            getInstance().meat_pheromone_diffusion != null ? getInstance().meat_pheromone_diffusion : 1.0f;
+    public static final float meatPheromoneDecay =
+            getInstance().meat_pheromone_decay != null ? getInstance().meat_pheromone_decay : chemicalsDecay;
+    public static final float protozoaPheromoneDiffusion =
+            getInstance().protozoa_pheromone_diffusion != null ? getInstance().protozoa_pheromone_diffusion : 1.0f;
+    public static final float protozoaPheromoneDecay =
+            getInstance().protozoa_pheromone_decay != null ? getInstance().protozoa_pheromone_decay : chemicalsDecay;
 
     // Protozoa settings
     public static final float minProtozoanBirthRadius = 0.01f;
@@ -156,6 +200,7 @@ public final class Settings {
     public static final int defaultRetinaSize = getInstance().starting_retina_size;
     public static final int maxRetinaSize = getInstance().max_retina_size;
     public static final float retinaCellGrowthCost = getInstance().retina_growth_cost;
+    public static final boolean retinaDepthSensors = getInstance().retina_depth_sensors;
     public static final int numContactSensors = 0;
     public static final float minRetinaRayAngle = (float) Math.toRadians(10);
     public static final float minHealthToSplit = getInstance().min_health_to_split;
@@ -172,6 +217,12 @@ public final class Settings {
     public static final float spikeDamage = getInstance().spike_damage;
     public static final float matingTime = 0.1f;
     public static final float globalMutationChance = getInstance().global_mutation_chance;
+    public static final int innovationGenerationWindow = getInstance().innovation_generation_window > 0 ? getInstance().innovation_generation_window : 10;
+    public static final int phenotypeCacheSize = 4096;
+    public static final float speciesDistanceThreshold = getInstance().species_distance_threshold > 0 ? getInstance().species_distance_threshold : 1.0f;
+    public static final float speciesExcessCoefficient = 1.0f;
+    public static final float speciesDisjointCoefficient = 1.0f;
+    public static final float speciesWeightCoefficient = 0.4f;
     public static final float protozoaInteractRange = getInstance().max_interact_range;
     public static final float eatingConversionRatio = 0.75f;
 
@@ -192,11 +243,21 @@ public final class Settings {
     public static final float statsDistanceScalar = 100.0f;
     public static final float statsTimeScalar = 100.0f;
     public static final float statsMassScalar = 1000f;
+    public static final int statsHistoryCapacity = 1000;
+    public static final int statsHistoryDownsampling = 10;
+    public static final int statsHistoryResolutions = 3;
 
     // Rendering
 
     public static final boolean showFPS = false;
     public static final boolean antiAliasing = true;
+    public static final int frameExportInterval = getInstance().frame_export_interval;
+    public static final int frameExportWidth = getInstance().frame_export_width > 0 ? getInstance().frame_export_width : 1280;
+    public static final int frameExportHeight = getInstance().frame_export_height > 0 ? getInstance().frame_export_height : 720;
+    public static final int frameExportThreads = getInstance().frame_export_threads > 0 ? getInstance().frame_export_threads : 2;
+    public static final int frameExportQueueSize = getInstance().frame_export_queue_size > 0 ? getInstance().frame_export_queue_size : 8;
+    public static final int circleSpriteCacheSize = 4096;
+    public static final float maxCircleSpriteRadius = 24;
 
 
     public static Boolean setMaxPlants(Float maxPlants) {
@@ -11,6 +11,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,7 +32,9 @@ public class Simulation
 	private final String name;
 	private final String genomeFile, historyFile;
 	private List<String> statsNames;
+	private volatile StatsHistory statsHistory;
 	private final REPL repl;
+	private final List<Runnable> updateListeners = new CopyOnWriteArrayList<>();
 
 	public Simulation()
 	{
@@ -178,6 +181,8 @@ public class Simulation
 				double currTime = Utils.getTimeSeconds();
 				if (!pause)
 					update();
+				else
+					notifyUpdateListeners();
 				float updateTime = (float) (Utils.getTimeSeconds() - currTime);
 				try {
 					if (refreshDelay - updateTime > 0)
@@ -188,6 +193,8 @@ public class Simulation
 			} else {
 				if (!pause)
 					update();
+				else
+					notifyUpdateListeners();
 			}
 
 			if (tank.numberOfProtozoa() <= 0 && Settings.finishOnProtozoaExtinction) {
@@ -211,6 +218,7 @@ public class Simulation
 		float delta = timeDilation * Settings.simulationUpdateDelta;
 		synchronized (tank) {
 			tank.update(delta);
+			updateListeners.forEach(Runnable::run);
 		}
 
 		timeSinceSave += delta;
@@ -226,6 +234,20 @@ public class Simulation
 		}
 	}
 
+	/**
+	 * Registers a callback to run on the simulation thread after every update, while the tank lock
+	 * is held. Listeners are also run while paused, so that they can still see changes made to the tank.
+	 */
+	public void addUpdateListener(Runnable listener) {
+		updateListeners.add(listener);
+	}
+
+	private void notifyUpdateListeners() {
+		synchronized (tank) {
+			updateListeners.forEach(Runnable::run);
+		}
+	}
+
 	public void close() {
 		simulate = false;
 		System.out.println();
@@ -246,7 +268,10 @@ public class Simulation
 			statsNames = new ArrayList<>(tank.getStats(true).keySet());
 			String statsCsvHeader = String.join(",", statsNames);
 			FileIO.appendLine(historyFile, statsCsvHeader);
+			statsHistory = new StatsHistory(statsNames, Settings.statsHistoryCapacity,
+					Settings.statsHistoryDownsampling, Settings.statsHistoryResolutions);
 		}
+		statsHistory.record(tank.getElapsedTime(), stats);
 
 		String statsString = statsNames.stream()
 				.map(k -> String.format("%.5f", stats.get(k)))
@@ -269,6 +294,13 @@ public class Simulation
 
 	public Tank getTank() { return tank; }
 
+	public String getName() { return name; }
+
+	/**
+	 * @return the statistics recorded at each history snapshot since the simulation started, or null before the first
+	 */
+	public StatsHistory getStatsHistory() { return statsHistory; }
+
 	public long getGeneration() { return tank.getGeneration(); }
 
 	public float getElapsedTime() { return tank.getElapsedTime(); }
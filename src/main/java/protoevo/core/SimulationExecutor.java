@@ -0,0 +1,196 @@
+package protoevo.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs the parallel phases of the simulation on a dedicated fork-join pool, rather than
+ * the JVM-wide common pool shared with the UI and REPL. The thread count, the grain size
+ * at which work stops being split and the worker thread names are set from the settings.
+ * Each named phase records its wall time and the time workers spent busy on it,
+ * from which the pool utilisation of that phase is reported.
+ */
+public class SimulationExecutor {
+
+    private static SimulationExecutor instance;
+
+    public static synchronized SimulationExecutor getInstance() {
+        if (instance == null)
+            instance = new SimulationExecutor(
+                    Settings.simulationThreads, Settings.parallelGrainSize, Settings.workerThreadName);
+        return instance;
+    }
+
+    private static class PhaseStats {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+    }
+
+    private final ForkJoinPool pool;
+    private final int grainSize;
+    private final Map<String, PhaseStats> phaseStats = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads number of worker threads, or 0 to use every available processor
+     * @param grainSize number of items below which work is no longer split, or 0 to pick
+     *                  one from the amount of work and the number of threads
+     * @param threadName prefix for the names of the worker threads
+     */
+    public SimulationExecutor(int threads, int grainSize, String threadName) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        String prefix = threadName == null || threadName.isEmpty() ? "protoevo-worker" : threadName;
+        AtomicInteger threadCount = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(prefix + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.pool = new ForkJoinPool(parallelism, factory, null, false);
+        this.grainSize = Math.max(0, grainSize);
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final int from, to, grain;
+        private final IntConsumer action;
+        private final PhaseStats stats;
+
+        RangeTask(int from, int to, int grain, IntConsumer action, PhaseStats stats) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                long start = System.nanoTime();
+                for (int i = from; i < to; i++)
+                    action.accept(i);
+                stats.busyNanos.add(System.nanoTime() - start);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, action, stats),
+                      new RangeTask(mid, to, grain, action, stats));
+        }
+    }
+
+    private int grainFor(int n) {
+        if (grainSize > 0)
+            return grainSize;
+        return Math.max(1, n / (8 * pool.getParallelism()));
+    }
+
+    private void run(String phase, int from, int to, int grain, IntConsumer action) {
+        PhaseStats stats = phaseStats.computeIfAbsent(phase, k -> new PhaseStats());
+        long start = System.nanoTime();
+        pool.invoke(new RangeTask(from, to, grain, action, stats));
+        stats.wallNanos.add(System.nanoTime() - start);
+        stats.invocations.increment();
+    }
+
+    /**
+     * Calls the action on every index in {@code [from, to)} in parallel, returning once all have completed.
+     * @param phase name under which the time spent is recorded
+     */
+    public void forRange(String phase, int from, int to, IntConsumer action) {
+        if (to <= from)
+            return;
+        run(phase, from, to, grainFor(to - from), action);
+    }
+
+    /**
+     * Calls the action on every element of the list in parallel, returning once all have completed.
+     * The list must support fast random access and must not be modified until this returns.
+     * @param phase name under which the time spent is recorded
+     */
+    public <T> void forEach(String phase, List<T> items, Consumer<? super T> action) {
+        forRange(phase, 0, items.size(), i -> action.accept(items.get(i)));
+    }
+
+    public <T> void forEach(String phase, T[] items, Consumer<? super T> action) {
+        forRange(phase, 0, items.length, i -> action.accept(items[i]));
+    }
+
+    /**
+     * Like {@link #forEach(String, List, Consumer)}, but splits the list into contiguous partitions
+     * of roughly equal estimated cost rather than equal length, so that a few expensive items
+     * do not leave one worker running long after the others have finished.
+     * @param cost estimate of the relative cost of calling the action on an item
+     */
+    public <T> void forEachWeighted(String phase, List<T> items,
+                                    ToDoubleFunction<? super T> cost, Consumer<? super T> action) {
+        int n = items.size();
+        if (n == 0)
+            return;
+
+        double[] cumulativeCost = new double[n + 1];
+        for (int i = 0; i < n; i++)
+            cumulativeCost[i + 1] = cumulativeCost[i] + Math.max(0, cost.applyAsDouble(items.get(i)));
+
+        int nPartitions = Math.min(n, 8 * pool.getParallelism());
+        int[] bounds = new int[nPartitions + 1];
+        bounds[nPartitions] = n;
+        for (int p = 1; p < nPartitions; p++) {
+            double target = cumulativeCost[n] * p / nPartitions;
+            int idx = Arrays.binarySearch(cumulativeCost, target);
+            if (idx < 0)
+                idx = -idx - 1;
+            bounds[p] = Math.max(bounds[p - 1], Math.min(idx, n));
+        }
+
+        run(phase, 0, nPartitions, 1, p -> {
+            for (int i = bounds[p]; i < bounds[p + 1]; i++)
+                action.accept(items.get(i));
+        });
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return for each phase, the number of invocations, mean wall time in milliseconds and
+     * the fraction of the pool's capacity that was busy during the phase
+     */
+    public Map<String, float[]> getPhaseStats() {
+        Map<String, float[]> stats = new TreeMap<>();
+        for (Map.Entry<String, PhaseStats> entry : phaseStats.entrySet()) {
+            PhaseStats phase = entry.getValue();
+            long invocations = phase.invocations.sum();
+            long wall = phase.wallNanos.sum();
+            float meanWallMs = invocations == 0 ? 0 : wall / 1e6f / invocations;
+            float utilisation = wall == 0 ? 0 : phase.busyNanos.sum() / (float) (wall * getParallelism());
+            stats.put(entry.getKey(), new float[]{invocations, meanWallMs, utilisation});
+        }
+        return stats;
+    }
+
+    public void resetPhaseStats() {
+        phaseStats.clear();
+    }
+
+    public void printPhaseStats() {
+        System.out.println("Simulation pool: " + getParallelism() + " threads");
+        for (Map.Entry<String, float[]> entry : getPhaseStats().entrySet()) {
+            float[] stats = entry.getValue();
+            System.out.printf("%-24s %10d calls %9.3f ms/call %6.1f%% utilisation%n",
+                    entry.getKey(), (long) stats[0], stats[1], 100 * stats[2]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package protoevo.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry giving every statistic reported by cells a fixed integer id, so that statistics can be
+ * collected into flat arrays indexed by id and only turned into labelled maps for output.
+ * Ids are registered once, when the classes reporting them are loaded.
+ */
+public final class StatSchema {
+
+    private static final List<String> names = new ArrayList<>();
+    private static final Map<String, Integer> ids = new HashMap<>();
+
+    private StatSchema() {}
+
+    /**
+     * @return the id of the statistic with the given label, registering it if it is new
+     */
+    public static synchronized int register(String name) {
+        return ids.computeIfAbsent(name, k -> {
+            names.add(k);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * Registers one statistic for each key, labelled by the key followed by {@code suffix}.
+     * @return the ids of the statistics, in the same order as the keys
+     */
+    public static int[] register(Object[] keys, String suffix) {
+        int[] registered = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            registered[i] = register(keys[i] + suffix);
+        return registered;
+    }
+
+    public static synchronized int size() {
+        return names.size();
+    }
+
+    public static synchronized String name(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return an array with a slot for every registered statistic, each set to NaN to mark it as not reported
+     */
+    public static float[] newValues() {
+        float[] values = new float[size()];
+        Arrays.fill(values, Float.NaN);
+        return values;
+    }
+
+    /**
+     * @return the reported values labelled by name, skipping statistics that were not reported
+     */
+    public static Map<String, Float> toMap(float[] values) {
+        Map<String, Float> stats = new TreeMap<>();
+        for (int id = 0; id < values.length; id++)
+            if (!Float.isNaN(values[id]))
+                stats.put(name(id), values[id]);
+        return stats;
+    }
+}
@@ -0,0 +1,89 @@
+package protoevo.core;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Running count, mean and variance of every statistic in the {@link StatSchema}, updated one sample
+ * at a time with Welford's algorithm. Accumulators filled on separate threads can be merged, so that
+ * the statistics of a population can be gathered in a single parallel pass. Only the statistics
+ * reported by at least one sample are output.
+ */
+public class StatsAccumulator {
+
+    private final int size;
+    private final double[] mean, m2;
+    private final BitSet seen = new BitSet();
+    private long count = 0;
+
+    public StatsAccumulator(int size) {
+        this.size = size;
+        mean = new double[size];
+        m2 = new double[size];
+    }
+
+    /**
+     * Adds one sample, indexed by statistic id. Statistics that were not reported (NaN)
+     * count as 0, so that every statistic is averaged over the same samples.
+     */
+    public void add(float[] values) {
+        count++;
+        int n = Math.min(size, values.length);
+        for (int id = 0; id < n; id++) {
+            double x = 0;
+            if (!Float.isNaN(values[id])) {
+                x = values[id];
+                seen.set(id);
+            }
+            double delta = x - mean[id];
+            mean[id] += delta / count;
+            m2[id] += delta * (x - mean[id]);
+        }
+        for (int id = n; id < size; id++) {
+            double delta = -mean[id];
+            mean[id] += delta / count;
+            m2[id] += delta * -mean[id];
+        }
+    }
+
+    /**
+     * Combines the samples of another accumulator into this one.
+     */
+    public void merge(StatsAccumulator other) {
+        if (other.count == 0)
+            return;
+        seen.or(other.seen);
+        if (count == 0) {
+            System.arraycopy(other.mean, 0, mean, 0, size);
+            System.arraycopy(other.m2, 0, m2, 0, size);
+            count = other.count;
+            return;
+        }
+        long total = count + other.count;
+        for (int id = 0; id < size; id++) {
+            double delta = other.mean[id] - mean[id];
+            mean[id] += delta * other.count / total;
+            m2[id] += other.m2[id] + delta * delta * count * other.count / total;
+        }
+        count = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds the sum, mean and population variance of every statistic reported by any sample to {@code stats},
+     * labelled "Sum", "Mean" and "Var" followed by the statistic's name.
+     */
+    public void putStats(Map<String, Float> stats) {
+        if (count == 0)
+            return;
+        for (int id = seen.nextSetBit(0); id >= 0; id = seen.nextSetBit(id + 1)) {
+            String name = StatSchema.name(id);
+            stats.put("Sum " + name, (float) (mean[id] * count));
+            stats.put("Mean " + name, (float) mean[id]);
+            stats.put("Var " + name, (float) (m2[id] / count));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package protoevo.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory history of the tank statistics recorded at each history snapshot, for plotting and
+ * querying without reading back the history file. Each statistic is kept in fixed-size ring buffers
+ * at several resolutions: every snapshot, and averages over successively larger blocks of snapshots.
+ * Older data survives only at coarser resolution, so memory use stays constant however long the run.
+ */
+public class StatsHistory {
+
+    private class Level {
+        private final float[] times = new float[capacity];
+        private final float[][] values;
+        private final int blockSize;
+        private int head = 0, size = 0;
+
+        // Running sums of the points from the level below that make up the next point of this level
+        private final double[] pendingSums;
+        private double pendingTime = 0;
+        private int pendingCount = 0;
+
+        Level(int blockSize) {
+            this.blockSize = blockSize;
+            values = new float[names.size()][capacity];
+            pendingSums = new double[names.size()];
+        }
+
+        void append(float time, float[] point) {
+            times[head] = time;
+            for (int stat = 0; stat < point.length; stat++)
+                values[stat][head] = point[stat];
+            head = (head + 1) % capacity;
+            size = Math.min(size + 1, capacity);
+        }
+
+        /**
+         * Adds a point from the finer level, appending the average once a full block has been gathered.
+         * @return whether a point was appended
+         */
+        boolean accumulate(float time, float[] point, float[] average) {
+            pendingTime += time;
+            for (int stat = 0; stat < point.length; stat++)
+                pendingSums[stat] += point[stat];
+            if (++pendingCount < downsampleFactor)
+                return false;
+
+            for (int stat = 0; stat < point.length; stat++)
+                average[stat] = (float) (pendingSums[stat] / pendingCount);
+            append((float) (pendingTime / pendingCount), average);
+            Arrays.fill(pendingSums, 0);
+            pendingTime = 0;
+            pendingCount = 0;
+            return true;
+        }
+
+        int oldest() {
+            return (head - size + capacity) % capacity;
+        }
+
+        float oldestTime() {
+            return size == 0 ? Float.MAX_VALUE : times[oldest()];
+        }
+    }
+
+    private final int capacity, downsampleFactor;
+    private final List<String> names;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final Level[] levels;
+    private final float[] point, average;
+
+    /**
+     * @param names the statistics to record
+     * @param capacity number of points kept at each resolution
+     * @param downsampleFactor number of points averaged into one point of the next coarser resolution
+     * @param nLevels number of resolutions
+     */
+    public StatsHistory(List<String> names, int capacity, int downsampleFactor, int nLevels) {
+        this.names = new ArrayList<>(names);
+        this.capacity = Math.max(1, capacity);
+        this.downsampleFactor = Math.max(2, downsampleFactor);
+        for (int i = 0; i < names.size(); i++)
+            columns.put(names.get(i), i);
+
+        levels = new Level[Math.max(1, nLevels)];
+        int blockSize = 1;
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level(blockSize);
+            blockSize *= this.downsampleFactor;
+        }
+        point = new float[names.size()];
+        average = new float[names.size()];
+    }
+
+    /**
+     * Records the statistics at the given time. Statistics missing from {@code stats} are recorded as NaN,
+     * and statistics that were not named when the history was created are ignored.
+     */
+    public synchronized void record(float time, Map<String, Float> stats) {
+        for (int i = 0; i < point.length; i++) {
+            Float value = stats.get(names.get(i));
+            point[i] = value == null ? Float.NaN : value;
+        }
+
+        levels[0].append(time, point);
+        float[] finer = point;
+        for (int i = 1; i < levels.length; i++) {
+            if (!levels[i].accumulate(time, finer, average))
+                break;
+            time = levels[i].times[(levels[i].head - 1 + capacity) % capacity];
+            System.arraycopy(average, 0, point, 0, point.length);
+            finer = point;
+        }
+    }
+
+    /**
+     * Returns the recorded values of a statistic between two times, from the finest resolution that still
+     * covers the start of the range, or from the resolution reaching furthest back if none do.
+     * @return the times and values of the points in the range, as {times, values}, or null if the statistic is unknown
+     */
+    public synchronized float[][] query(String name, float fromTime, float toTime) {
+        Integer column = columns.get(name);
+        if (column == null)
+            return null;
+
+        Level level = levelFor(fromTime);
+        int start = level.oldest(), n = 0;
+        float[] times = new float[level.size], values = new float[level.size];
+        for (int i = 0; i < level.size; i++) {
+            int slot = (start + i) % capacity;
+            float t = level.times[slot];
+            if (t >= fromTime && t <= toTime) {
+                times[n] = t;
+                values[n] = level.values[column][slot];
+                n++;
+            }
+        }
+        return new float[][]{Arrays.copyOf(times, n), Arrays.copyOf(values, n)};
+    }
+
+    /**
+     * @return the number of snapshots each point of the resolution used for the query is made from
+     */
+    public synchronized int resolutionFor(float fromTime) {
+        return levelFor(fromTime).blockSize;
+    }
+
+    private Level levelFor(float fromTime) {
+        Level longest = levels[0];
+        for (Level level : levels) {
+            if (level.size > 0 && level.oldestTime() <= fromTime)
+                return level;
+            if (level.oldestTime() < longest.oldestTime())
+                longest = level;
+        }
+        return longest;
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+}
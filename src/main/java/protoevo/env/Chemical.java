@@ -2,42 +2,87 @@ package protoevo.env;
 
 import protoevo.core.Settings;
 
-import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-public class Chemical implements Serializable {
-    public static final long serialVersionUID = 1L;
-    float currentPlantPheromoneDensity, nextPlantPheromoneDensity;
-    private transient Chemical[] neighbours;
+/**
+ * A species of chemical that can be deposited into, diffused through, and sensed from
+ * the {@link ChemicalSolution}. Every registered chemical is assigned a channel index,
+ * which is its offset within each cell of the solution's interleaved density grid.
+ */
+public class Chemical {
 
-    public void propagate(float delta) {
-        nextPlantPheromoneDensity = currentPlantPheromoneDensity;
-        if (neighbours != null && neighbours.length > 0) {
-            float incoming = 0f;
-            for (Chemical chemical : neighbours)
-                incoming += chemical.currentPlantPheromoneDensity;
-            incoming /= neighbours.length;
-            nextPlantPheromoneDensity += delta * incoming;
-        }
-        nextPlantPheromoneDensity *= 1 - delta * Settings.chemicalsDecay;
+    private static final List<Chemical> registeredChemicals = new ArrayList<>();
+
+    public static final Chemical PLANT_PHEROMONE = register(
+            "Plant Pheromone", Settings.plantPheromoneDiffusion, Settings.plantPheromoneDecay);
+    public static final Chemical MEAT_PHEROMONE = register(
+            "Meat Pheromone", Settings.meatPheromoneDiffusion, Settings.meatPheromoneDecay);
+    public static final Chemical PROTOZOA_PHEROMONE = register(
+            "Protozoa Pheromone", Settings.protozoaPheromoneDiffusion, Settings.protozoaPheromoneDecay);
+
+    private final String name;
+    private final int channel;
+    private final float diffusion, decay;
+
+    private Chemical(String name, int channel, float diffusion, float decay) {
+        this.name = name;
+        this.channel = channel;
+        this.diffusion = diffusion;
+        this.decay = decay;
+    }
+
+    /**
+     * Registers a new chemical channel. Must be called before any {@link ChemicalSolution}
+     * or protozoa genome is created, as both are sized by the number of registered chemicals.
+     * @param name unique name of the chemical, also used to label network sensors
+     * @param diffusion rate at which the chemical spreads to neighbouring grid cells
+     * @param decay rate at which the chemical breaks down
+     * @return the registered chemical
+     */
+    public static synchronized Chemical register(String name, float diffusion, float decay) {
+        for (Chemical chemical : registeredChemicals)
+            if (chemical.name.equals(name))
+                throw new IllegalArgumentException("Chemical already registered: " + name);
+        Chemical chemical = new Chemical(name, registeredChemicals.size(), diffusion, decay);
+        registeredChemicals.add(chemical);
+        return chemical;
+    }
+
+    public static Chemical get(String name) {
+        for (Chemical chemical : registeredChemicals)
+            if (chemical.name.equals(name))
+                return chemical;
+        return null;
+    }
+
+    public static List<Chemical> getRegisteredChemicals() {
+        return Collections.unmodifiableList(registeredChemicals);
+    }
+
+    public static int numChemicals() {
+        return registeredChemicals.size();
+    }
+
+    public String getName() {
+        return name;
     }
 
-    public void update() {
-        currentPlantPheromoneDensity = Math.max(Math.min(nextPlantPheromoneDensity, 1f), 0f);
-        if (Float.isNaN(currentPlantPheromoneDensity))
-            currentPlantPheromoneDensity = 0f;
+    public int getChannel() {
+        return channel;
     }
 
-    private float sigmoid(float z) {
-        return 1 / (1 + (float) Math.exp(-z));
+    public float getDiffusion() {
+        return diffusion;
     }
 
-    public float pheromoneFlow(Chemical other) {
-        float densityDiff = other.currentPlantPheromoneDensity - currentPlantPheromoneDensity;
-        float p = Settings.chemicalsFlow * (float) Math.tanh(densityDiff);
-        return p * densityDiff;
+    public float getDecay() {
+        return decay;
     }
 
-    public void setNeighbours(Chemical...neighbours) {
-        this.neighbours = neighbours;
+    @Override
+    public String toString() {
+        return name;
     }
 }
@@ -1,16 +1,23 @@
 package protoevo.env;
 
 import protoevo.biology.Cell;
-import protoevo.biology.PlantCell;
 import protoevo.core.Settings;
+import protoevo.core.SimulationExecutor;
 import protoevo.utils.Vector2;
 
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Collection;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
 
+/**
+ * Grid of chemical densities covering the tank. All registered {@link Chemical} channels
+ * are stored interleaved in a single flat array, so that each grid cell holds the densities of
+ * every channel contiguously, and all channels are advanced together in one stencil pass.
+ */
 public class ChemicalSolution implements Serializable {
-    public static final long serialVersionUID = 1L;
+    public static final long serialVersionUID = 2L;
+    private static final VarHandle DENSITY = MethodHandles.arrayElementVarHandle(float[].class);
 
     private final float gridSize;
     private final float xMin;
@@ -19,8 +26,12 @@ public class ChemicalSolution implements Serializable {
     private final float yMax;
     private final int nYChunks;
     private final int nXChunks;
-    private final Chemical[][] chemicalGrid;
+    private final int nChannels;
+    private float[] densities, nextDensities;
+    private transient float[] diffusion, decay;
+    private transient ImplicitDiffusionSolver implicitSolver;
     private float timeSinceUpdate = 0;
+    private transient volatile long version = 0;
 
     public ChemicalSolution(float xMin, float xMax,
                             float yMin, float yMax,
@@ -33,22 +44,38 @@ public class ChemicalSolution implements Serializable {
 
         this.nXChunks = 2 + (int) ((xMax - xMin) / gridSize);
         this.nYChunks = 2 + (int) ((yMax - yMin) / gridSize);
+        this.nChannels = Chemical.numChemicals();
 
-        chemicalGrid = new Chemical[nXChunks][nYChunks];
-        for (int i = 0; i < nXChunks; i++)
-            for (int j = 0; j < nYChunks; j++)
-                chemicalGrid[i][j] = new Chemical();
+        densities = new float[nXChunks * nYChunks * nChannels];
+        nextDensities = new float[densities.length];
     }
 
     public void initialise() {
-        for (int i = 1; i < nXChunks - 1; i++)
-            for (int j = 1; j < nYChunks - 1; j++)
-                chemicalGrid[i][j].setNeighbours(
-                        chemicalGrid[i][j-1],
-                        chemicalGrid[i][j+1],
-                        chemicalGrid[i-1][j],
-                        chemicalGrid[i+1][j]
-                );
+        if (nChannels != Chemical.numChemicals())
+            throw new IllegalStateException(
+                    "Chemical solution has " + nChannels + " channels but "
+                            + Chemical.numChemicals() + " chemicals are registered.");
+
+        diffusion = new float[nChannels];
+        decay = new float[nChannels];
+        for (Chemical chemical : Chemical.getRegisteredChemicals()) {
+            diffusion[chemical.getChannel()] = chemical.getDiffusion();
+            decay[chemical.getChannel()] = chemical.getDecay();
+        }
+
+        if (Settings.implicitChemicalSolver) {
+            for (int c = 0; c < nChannels; c++)
+                if (decay[c] < diffusion[c])
+                    throw new IllegalStateException(
+                            "The implicit chemical solver requires decay >= diffusion, but "
+                                    + Chemical.getRegisteredChemicals().get(c) + " has decay "
+                                    + decay[c] + " and diffusion " + diffusion[c] + ".");
+            implicitSolver = new ImplicitDiffusionSolver(nXChunks, nYChunks, nChannels);
+        }
+    }
+
+    private int toIndex(int i, int j) {
+        return (i * nYChunks + j) * nChannels;
     }
 
     public Vector2 toTankCoords(int i, int j) {
@@ -79,39 +106,147 @@ public class ChemicalSolution implements Serializable {
         return j;
     }
 
-    public void depositChemicals(float delta, Cell e) {
-        if (e instanceof PlantCell && !e.isDead()) {
-            int i = toChemicalGridX(e.getPos().getX());
-            int j = toChemicalGridY(e.getPos().getY());
-            float k = Settings.plantPheromoneDeposit;
-            chemicalGrid[i][j].currentPlantPheromoneDensity += delta * k * e.getRadius() * e.getHealth();
+    /**
+     * Adds to the density of the chemical at the position. Cells deposit in parallel, so the addition is made
+     * with a compare-and-set loop, which cannot lose a deposit made to the same grid cell at the same time.
+     */
+    public void deposit(Chemical chemical, Vector2 pos, float amount) {
+        int i = toChemicalGridX(pos.getX());
+        int j = toChemicalGridY(pos.getY());
+        int k = toIndex(i, j) + chemical.getChannel();
+        float[] densities = this.densities;
+        float density;
+        do {
+            density = (float) DENSITY.getVolatile(densities, k);
+        } while (!DENSITY.weakCompareAndSet(densities, k, density, density + amount));
+    }
+
+    /**
+     * Advances every channel of row {@code i} by one explicit step, writing the clamped
+     * result into the next density buffer.
+     */
+    private void propagateRow(int i, float delta) {
+        final int n = nChannels;
+        final int rowStride = nYChunks * n;
+        final boolean interiorRow = i > 0 && i < nXChunks - 1;
+        for (int j = 0; j < nYChunks; j++) {
+            int idx = toIndex(i, j);
+            boolean interior = interiorRow && j > 0 && j < nYChunks - 1;
+            for (int c = 0; c < n; c++) {
+                int k = idx + c;
+                float density = densities[k];
+                if (interior) {
+                    float incoming = densities[k - n] + densities[k + n]
+                            + densities[k - rowStride] + densities[k + rowStride];
+                    density += delta * diffusion[c] * incoming / 4f;
+                }
+                density *= 1 - delta * decay[c];
+                density = Math.max(Math.min(density, 1f), 0f);
+                nextDensities[k] = Float.isNaN(density) ? 0f : density;
+            }
         }
     }
 
-    public void update(float delta, Collection<Cell> entities) {
+    public void update(float delta, List<Cell> entities) {
         timeSinceUpdate += delta;
         if (timeSinceUpdate >= Settings.chemicalsUpdateTime) {
-            entities.parallelStream().forEach(e -> depositChemicals(timeSinceUpdate, e));
-            Arrays.stream(chemicalGrid).parallel().forEach(
-                    row -> Arrays.stream(row).forEach(chemical -> chemical.propagate(timeSinceUpdate))
-            );
-            Arrays.stream(chemicalGrid).parallel().forEach(
-                    row -> Arrays.stream(row).forEach(Chemical::update)
-            );
+            final float dt = timeSinceUpdate;
+            SimulationExecutor.getInstance().forEach("Deposit Chemicals", entities, e -> {
+                if (!e.isDead())
+                    e.depositChemicals(dt, this);
+            });
+            if (implicitSolver != null)
+                stepImplicit(dt, Settings.chemicalSolverCycles);
+            else
+                stepExplicit(dt);
             timeSinceUpdate = 0;
         }
     }
 
-    public float getPlantPheromoneGradientX(int i, int j) {
+    /**
+     * Advances the field by one forward Euler step. Only stable while
+     * {@code delta * diffusion} and {@code delta * decay} stay small.
+     */
+    public void stepExplicit(float delta) {
+        SimulationExecutor.getInstance().forRange("Diffuse Chemicals", 0, nXChunks, i -> propagateRow(i, delta));
+        swapBuffers();
+    }
+
+    /**
+     * Advances the field by one backward Euler step, which stays stable for any {@code delta}.
+     * @param cycles number of multigrid V-cycles used to solve the step
+     */
+    public void stepImplicit(float delta, int cycles) {
+        if (implicitSolver == null)
+            implicitSolver = new ImplicitDiffusionSolver(nXChunks, nYChunks, nChannels);
+        implicitSolver.step(densities, nextDensities, delta, diffusion, decay, cycles);
+        swapBuffers();
+    }
+
+    private void swapBuffers() {
+        float[] tmp = densities;
+        densities = nextDensities;
+        nextDensities = tmp;
+        version++;
+    }
+
+    /**
+     * @return a counter that changes every time the densities are updated
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    float[] getDensities() {
+        return densities;
+    }
+
+    /**
+     * Copies the densities of every channel, in the same layout as {@link #getDensity(int, int, int)} reads them.
+     * @param into an array to overwrite, or null
+     * @return the copy, which is a new array if the given one was null or of the wrong length
+     */
+    public float[] copyDensities(float[] into) {
+        float[] densities = this.densities;
+        if (into == null || into.length != densities.length)
+            into = new float[densities.length];
+        System.arraycopy(densities, 0, into, 0, densities.length);
+        return into;
+    }
+
+    /**
+     * Reads a density from an array filled by {@link #copyDensities(float[])}.
+     */
+    public float getDensity(float[] copy, Chemical chemical, int i, int j) {
+        return copy[toIndex(i, j) + chemical.getChannel()];
+    }
+
+    public float getDensity(int channel, int i, int j) {
+        return densities[toIndex(i, j) + channel];
+    }
+
+    public float getDensity(Chemical chemical, int i, int j) {
+        return getDensity(chemical.getChannel(), i, j);
+    }
+
+    public float getGradientX(Chemical chemical, int i, int j) {
         if (i < 1 || i >= nXChunks - 1)
             return 0f;
-        return chemicalGrid[i-1][j].currentPlantPheromoneDensity - chemicalGrid[i+1][j].currentPlantPheromoneDensity;
+        return getDensity(chemical, i - 1, j) - getDensity(chemical, i + 1, j);
     }
 
-    public float getPlantPheromoneGradientY(int i, int j) {
+    public float getGradientY(Chemical chemical, int i, int j) {
         if (j < 1 || j >= nYChunks - 1)
             return 0f;
-        return chemicalGrid[i][j-1].currentPlantPheromoneDensity - chemicalGrid[i][j+1].currentPlantPheromoneDensity;
+        return getDensity(chemical, i, j - 1) - getDensity(chemical, i, j + 1);
+    }
+
+    public float getPlantPheromoneGradientX(int i, int j) {
+        return getGradientX(Chemical.PLANT_PHEROMONE, i, j);
+    }
+
+    public float getPlantPheromoneGradientY(int i, int j) {
+        return getGradientY(Chemical.PLANT_PHEROMONE, i, j);
     }
 
     public int getNYChunks() {
@@ -122,7 +257,11 @@ public class ChemicalSolution implements Serializable {
         return nXChunks;
     }
 
+    public int getNumChannels() {
+        return nChannels;
+    }
+
     public float getPlantPheromoneDensity(int i, int j) {
-        return chemicalGrid[i][j].currentPlantPheromoneDensity;
+        return getDensity(Chemical.PLANT_PHEROMONE, i, j);
     }
 }
@@ -0,0 +1,87 @@
+package protoevo.env;
+
+import protoevo.core.Settings;
+
+import java.util.Random;
+
+/**
+ * Compares the explicit and implicit chemical solvers over one simulated second.
+ * Accuracy is the RMS difference from an explicit solution with a very small timestep,
+ * and cost is the wall-clock time needed to advance the field by one simulated second.
+ */
+public class ChemicalSolverBenchmark {
+
+    private static final float simulatedTime = 1f;
+    private static final float referenceDelta = 0.001f;
+    private static final int repeats = 3;
+
+    private final ChemicalSolution solution;
+    private final float[] initialDensities;
+
+    public ChemicalSolverBenchmark(int resolution, long seed) {
+        solution = new ChemicalSolution(-1, 1, -1, 1, 2f / resolution);
+        solution.initialise();
+
+        Random random = new Random(seed);
+        float[] densities = solution.getDensities();
+        int nChannels = solution.getNumChannels();
+        for (int blob = 0; blob < 50; blob++) {
+            int ci = 1 + random.nextInt(solution.getNXChunks() - 2);
+            int cj = 1 + random.nextInt(solution.getNYChunks() - 2);
+            int c = random.nextInt(nChannels);
+            int r = 2 + random.nextInt(resolution / 20 + 1);
+            for (int i = Math.max(1, ci - r); i < Math.min(solution.getNXChunks() - 1, ci + r); i++)
+                for (int j = Math.max(1, cj - r); j < Math.min(solution.getNYChunks() - 1, cj + r); j++)
+                    densities[(i * solution.getNYChunks() + j) * nChannels + c] = random.nextFloat();
+        }
+        initialDensities = densities.clone();
+    }
+
+    private void reset() {
+        System.arraycopy(initialDensities, 0, solution.getDensities(), 0, initialDensities.length);
+    }
+
+    private float[] run(float delta, boolean implicit, int cycles) {
+        reset();
+        int steps = Math.round(simulatedTime / delta);
+        for (int step = 0; step < steps; step++) {
+            if (implicit)
+                solution.stepImplicit(delta, cycles);
+            else
+                solution.stepExplicit(delta);
+        }
+        return solution.getDensities().clone();
+    }
+
+    private void report(String name, float delta, boolean implicit, int cycles, float[] reference) {
+        float[] result = run(delta, implicit, cycles);
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            run(delta, implicit, cycles);
+        double msPerSecond = (System.nanoTime() - start) / 1e6 / repeats / simulatedTime;
+
+        double sumSq = 0;
+        for (int i = 0; i < result.length; i++) {
+            double diff = result[i] - reference[i];
+            sumSq += diff * diff;
+        }
+        double rms = Math.sqrt(sumSq / result.length);
+        System.out.printf("%-10s dt=%-6.3f %10.2f ms/sim-second   rms error %.6f%n",
+                name, delta, msPerSecond, rms);
+    }
+
+    public static void main(String[] args) {
+        int resolution = args.length > 0 ? Integer.parseInt(args[0]) : Settings.numChemicalBreaks;
+        ChemicalSolverBenchmark benchmark = new ChemicalSolverBenchmark(resolution, 0);
+
+        System.out.println("Grid resolution " + resolution + ", simulating " + simulatedTime + "s");
+        float[] reference = benchmark.run(referenceDelta, false, 0);
+
+        float[] deltas = {Settings.chemicalsUpdateTime, 0.1f, 0.25f, 0.5f, 1f};
+        for (float delta : deltas)
+            benchmark.report("explicit", delta, false, 0, reference);
+        for (int cycles = 1; cycles <= 4; cycles *= 2)
+            for (float delta : deltas)
+                benchmark.report("implicit-" + cycles, delta, true, cycles, reference);
+    }
+}
@@ -0,0 +1,225 @@
+package protoevo.env;
+
+import protoevo.core.SimulationExecutor;
+
+import java.util.Arrays;
+
+/**
+ * Backward Euler solver for the chemical field update, stable at any timestep.
+ * <p>
+ * For each channel with diffusion {@code D} and decay {@code k}, the interior cells solve
+ * <pre>
+ *     (1 + dt k) u - dt D mean(neighbours of u) = u_old
+ * </pre>
+ * while the outer ring of the grid, which has no neighbours, simply decays.
+ * The system is solved with geometric multigrid V-cycles over cell-centred grids,
+ * using red-black Gauss-Seidel smoothing, averaging restriction and piecewise constant
+ * prolongation. The operator is only positive definite when {@code k >= D}.
+ */
+public class ImplicitDiffusionSolver {
+
+    private static final int minCoarseSize = 3;
+    private static final int preSmoothingSweeps = 2;
+    private static final int postSmoothingSweeps = 2;
+    private static final int coarsestSweeps = 20;
+    // flushing negligible densities keeps the smoother out of slow denormal arithmetic
+    private static final float minDensity = 1e-12f;
+
+    private final int nX, nY, nChannels, nLevels;
+    private final int[] levelX, levelY;
+    private final float[][][] u, f, r;
+
+    /**
+     * @param nX number of grid cells in the x direction, including the outer ring
+     * @param nY number of grid cells in the y direction, including the outer ring
+     * @param nChannels number of interleaved channels in the grid
+     */
+    public ImplicitDiffusionSolver(int nX, int nY, int nChannels) {
+        this.nX = nX;
+        this.nY = nY;
+        this.nChannels = nChannels;
+
+        int levels = 1;
+        int mX = nX - 2, mY = nY - 2;
+        while (Math.min(mX, mY) > minCoarseSize) {
+            mX = (mX + 1) / 2;
+            mY = (mY + 1) / 2;
+            levels++;
+        }
+        nLevels = levels;
+
+        levelX = new int[nLevels];
+        levelY = new int[nLevels];
+        levelX[0] = nX - 2;
+        levelY[0] = nY - 2;
+        for (int l = 1; l < nLevels; l++) {
+            levelX[l] = (levelX[l - 1] + 1) / 2;
+            levelY[l] = (levelY[l - 1] + 1) / 2;
+        }
+
+        u = new float[nChannels][nLevels][];
+        f = new float[nChannels][nLevels][];
+        r = new float[nChannels][nLevels][];
+        for (int c = 0; c < nChannels; c++) {
+            for (int l = 0; l < nLevels; l++) {
+                int size = levelX[l] * levelY[l];
+                u[c][l] = new float[size];
+                f[c][l] = new float[size];
+                r[c][l] = new float[size];
+            }
+        }
+    }
+
+    /**
+     * Advances every channel by one implicit step.
+     * @param current interleaved densities at the start of the step
+     * @param next buffer to write the interleaved, clamped densities to
+     * @param dt timestep
+     * @param diffusion diffusion rate of each channel
+     * @param decay decay rate of each channel
+     * @param cycles number of V-cycles to run per channel
+     */
+    public void step(float[] current, float[] next, float dt,
+                     float[] diffusion, float[] decay, int cycles) {
+        SimulationExecutor.getInstance().forRange("Solve Chemicals", 0, nChannels,
+                c -> solveChannel(c, current, next, dt, diffusion[c], decay[c], cycles));
+    }
+
+    private int gridIndex(int i, int j, int c) {
+        return (i * nY + j) * nChannels + c;
+    }
+
+    private void solveChannel(int c, float[] current, float[] next, float dt,
+                              float diffusion, float decay, int cycles) {
+        float decayFactor = 1 + dt * decay;
+
+        for (int i = 0; i < nX; i++) {
+            for (int j = 0; j < nY; j++) {
+                if (i == 0 || j == 0 || i == nX - 1 || j == nY - 1) {
+                    int k = gridIndex(i, j, c);
+                    next[k] = clamp(current[k] / decayFactor);
+                }
+            }
+        }
+
+        float beta = dt * diffusion / 4f;
+        float[] u0 = u[c][0], f0 = f[c][0];
+        int mX = levelX[0], mY = levelY[0];
+        for (int i = 0; i < mX; i++) {
+            for (int j = 0; j < mY; j++) {
+                int gi = i + 1, gj = j + 1;
+                float rhs = current[gridIndex(gi, gj, c)];
+                if (gi == 1)
+                    rhs += beta * next[gridIndex(0, gj, c)];
+                if (gi == nX - 2)
+                    rhs += beta * next[gridIndex(nX - 1, gj, c)];
+                if (gj == 1)
+                    rhs += beta * next[gridIndex(gi, 0, c)];
+                if (gj == nY - 2)
+                    rhs += beta * next[gridIndex(gi, nY - 1, c)];
+                f0[i * mY + j] = rhs;
+                u0[i * mY + j] = current[gridIndex(gi, gj, c)];
+            }
+        }
+
+        float baseDiagonal = 1 + dt * decay - dt * diffusion;
+        for (int cycle = 0; cycle < cycles; cycle++)
+            vCycle(c, 0, baseDiagonal, beta);
+
+        for (int i = 0; i < mX; i++)
+            for (int j = 0; j < mY; j++)
+                next[gridIndex(i + 1, j + 1, c)] = clamp(u0[i * mY + j]);
+    }
+
+    /**
+     * @param baseDiagonal the part of the diagonal that does not come from the neighbour stencil
+     * @param beta the neighbour coupling at this level
+     */
+    private void vCycle(int c, int level, float baseDiagonal, float beta) {
+        float diagonal = baseDiagonal + 4 * beta;
+        float[] ul = u[c][level], fl = f[c][level];
+        int mX = levelX[level], mY = levelY[level];
+
+        if (level == nLevels - 1) {
+            smooth(ul, fl, mX, mY, diagonal, beta, coarsestSweeps);
+            return;
+        }
+
+        smooth(ul, fl, mX, mY, diagonal, beta, preSmoothingSweeps);
+
+        float[] rl = r[c][level];
+        residual(ul, fl, rl, mX, mY, diagonal, beta);
+
+        float[] uc = u[c][level + 1], fc = f[c][level + 1];
+        int cY = levelY[level + 1];
+        restrict(rl, mX, mY, fc, cY);
+        Arrays.fill(uc, 0f);
+
+        vCycle(c, level + 1, baseDiagonal, beta / 4f);
+
+        for (int i = 0; i < mX; i++)
+            for (int j = 0; j < mY; j++)
+                ul[i * mY + j] += uc[(i / 2) * cY + j / 2];
+
+        smooth(ul, fl, mX, mY, diagonal, beta, postSmoothingSweeps);
+    }
+
+    private static float neighbourSum(float[] v, int i, int j, int mX, int mY) {
+        float sum = 0;
+        if (i > 0) sum += v[(i - 1) * mY + j];
+        if (i < mX - 1) sum += v[(i + 1) * mY + j];
+        if (j > 0) sum += v[i * mY + j - 1];
+        if (j < mY - 1) sum += v[i * mY + j + 1];
+        return sum;
+    }
+
+    private static void smooth(float[] v, float[] rhs, int mX, int mY,
+                               float diagonal, float beta, int sweeps) {
+        float invDiagonal = 1f / diagonal;
+        for (int sweep = 0; sweep < sweeps; sweep++) {
+            for (int colour = 0; colour < 2; colour++) {
+                for (int i = 0; i < mX; i++) {
+                    boolean edgeRow = i == 0 || i == mX - 1;
+                    for (int j = (i + colour) % 2; j < mY; j += 2) {
+                        int k = i * mY + j;
+                        float sum = edgeRow || j == 0 || j == mY - 1
+                                ? neighbourSum(v, i, j, mX, mY)
+                                : v[k - mY] + v[k + mY] + v[k - 1] + v[k + 1];
+                        v[k] = (rhs[k] + beta * sum) * invDiagonal;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void residual(float[] v, float[] rhs, float[] res, int mX, int mY,
+                                 float diagonal, float beta) {
+        for (int i = 0; i < mX; i++) {
+            for (int j = 0; j < mY; j++) {
+                int k = i * mY + j;
+                res[k] = rhs[k] - diagonal * v[k] + beta * neighbourSum(v, i, j, mX, mY);
+            }
+        }
+    }
+
+    private static void restrict(float[] fine, int mX, int mY, float[] coarse, int cY) {
+        Arrays.fill(coarse, 0f);
+        int[] counts = new int[coarse.length];
+        for (int i = 0; i < mX; i++) {
+            for (int j = 0; j < mY; j++) {
+                int k = (i / 2) * cY + j / 2;
+                coarse[k] += fine[i * mY + j];
+                counts[k]++;
+            }
+        }
+        for (int k = 0; k < coarse.length; k++)
+            coarse[k] /= counts[k];
+    }
+
+    private static float clamp(float density) {
+        if (density < minDensity)
+            return 0f;
+        density = Math.min(density, 1f);
+        return Float.isNaN(density) ? 0f : density;
+    }
+}
@@ -3,9 +3,9 @@ package protoevo.env;
 import protoevo.biology.Cell;
 import protoevo.core.Collidable;
 import protoevo.core.Simulation;
+import protoevo.utils.Colour;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -18,7 +18,7 @@ public class Rock extends Collidable implements Serializable {
     private final Vector2 centre;
     private final Vector2[] normals;
     private final Vector2[] boundingBox;
-    private final Color colour;
+    private final int colour;
 
     public Rock(Vector2 p1, Vector2 p2, Vector2 p3) {
         points = new Vector2[]{p1, p2, p3};
@@ -197,14 +197,14 @@ public class Rock extends Collidable implements Serializable {
         return edgesIntersect(e1[0], dir1, e2[0], dir2);
     }
 
-    public Color getColor() {
+    public int getColor() {
         return colour;
     }
 
-    public static Color randomRockColour() {
+    public static int randomRockColour() {
         int tone = 80 + Simulation.RANDOM.nextInt(20);
         int yellowing = Simulation.RANDOM.nextInt(20);
-        return new Color(tone + yellowing, tone + yellowing, tone);
+        return Colour.rgb(tone + yellowing, tone + yellowing, tone);
     }
 
     public boolean allEdgesAttached() {
@@ -3,36 +3,55 @@ package protoevo.env;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import protoevo.biology.*;
 import protoevo.biology.genes.Gene;
+import protoevo.biology.genes.ProtozoaGenome;
 import protoevo.core.ChunkManager;
+import protoevo.core.Phylogeny;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.core.SimulationExecutor;
+import protoevo.core.StatSchema;
+import protoevo.core.StatsAccumulator;
+import protoevo.neat.InnovationRegistry;
+import protoevo.neat.NetworkGenome;
+import protoevo.neat.SpeciesIndex;
 import protoevo.utils.FileIO;
 import protoevo.utils.Vector2;
 
 public class Tank implements Iterable<Cell>, Serializable
 {
-	private static final long serialVersionUID = 2804817237950199223L;
+	private static final long serialVersionUID = 5147380623518792216L;
 	private final float radius = Settings.tankRadius;
 	private float elapsedTime;
 //	public final HashMap<Class<? extends Cell>, Integer> cellCounts =
 //			new HashMap<>(3, 1);
-	private int nProtozoa, nPlants, nMeat;
+	private final AtomicInteger nProtozoa = new AtomicInteger(),
+			nPlants = new AtomicInteger(),
+			nMeat = new AtomicInteger();
 //	public final HashMap<Class<? extends Cell>, Integer> cellCapacities =
 //			new HashMap<>(3, 1)
 	private final ChunkManager chunkManager;
 	private final ChemicalSolution chemicalSolution;
 	private final List<Rock> rocks;
-	private long generation = 1, protozoaBorn = 0, totalCellsAdded = 0, crossoverEvents = 0;
+	private final AtomicLong generation = new AtomicLong(1);
+	private final LongAdder protozoaBorn = new LongAdder(),
+			totalCellsAdded = new LongAdder(),
+			crossoverEvents = new LongAdder();
+	private final InnovationRegistry innovations;
+	private final SpeciesIndex species = new SpeciesIndex(Settings.speciesDistanceThreshold);
+	private final Phylogeny phylogeny = new Phylogeny();
 
 	private String genomeFile = null;
-	private final List<String> genomesToWrite = new ArrayList<>();
-
-	private final List<Cell> entitiesToAdd = new ArrayList<>();
+	// Both queues are filled from the parallel update passes, and drained at the start of the next tick
+	private final Queue<String> genomesToWrite = new ConcurrentLinkedQueue<>();
+	private final Queue<Cell> entitiesToAdd = new ConcurrentLinkedQueue<>();
 	private boolean hasInitialised;
 
 	public Tank() 
@@ -48,12 +67,15 @@ public class Tank implements Iterable<Cell>, Serializable
 		}
 
 		rocks = new ArrayList<>();
+		innovations = new InnovationRegistry(0, Settings.innovationGenerationWindow);
 
 		elapsedTime = 0;
 		hasInitialised = false;
 	}
 
 	public void initialise() {
+		InnovationRegistry.setGlobal(innovations);
+
 		if (chemicalSolution != null)
 			chemicalSolution.initialise();
 
@@ -174,18 +196,16 @@ public class Tank implements Iterable<Cell>, Serializable
 	}
 
 	private void flushEntitiesToAdd() {
-		entitiesToAdd.forEach(chunkManager::add);
-		entitiesToAdd.clear();
+		Cell e;
+		while ((e = entitiesToAdd.poll()) != null)
+			chunkManager.add(e);
 		chunkManager.update();
 	}
 
 	private void flushWrites() {
-		List<String> genomeWritesHandled = new ArrayList<>();
-		for (String line : genomesToWrite) {
+		String line;
+		while ((line = genomesToWrite.poll()) != null)
 			FileIO.appendLine(genomeFile, line);
-			genomeWritesHandled.add(line);
-		}
-		genomesToWrite.removeAll(genomeWritesHandled);
 	}
 
 	public void update(float delta) 
@@ -193,13 +213,16 @@ public class Tank implements Iterable<Cell>, Serializable
 		elapsedTime += delta;
 		flushEntitiesToAdd();
 		flushWrites();
+		innovations.setGeneration(generation.get());
+		species.removeExtinct();
 
-		Collection<Cell> cells = chunkManager.getAllCells();
+		List<Cell> cells = chunkManager.getAllCells();
+		SimulationExecutor executor = SimulationExecutor.getInstance();
 
-		cells.parallelStream().forEach(Cell::resetPhysics);
-		cells.parallelStream().forEach(cell -> updateCell(cell, delta));
-		cells.parallelStream().forEach(cell -> cell.physicsUpdate(delta));
-		cells.parallelStream().forEach(this::handleDeadEntities);
+		executor.forEach("Reset Physics", cells, Cell::resetPhysics);
+		executor.forEachWeighted("Update Cells", cells, Cell::getUpdateCost, cell -> updateCell(cell, delta));
+		executor.forEach("Physics Update", cells, cell -> cell.physicsUpdate(delta));
+		executor.forEach("Handle Dead Cells", cells, this::handleDeadEntities);
 
 		if (chemicalSolution != null)
 			chemicalSolution.update(delta, cells);
@@ -210,17 +233,24 @@ public class Tank implements Iterable<Cell>, Serializable
 		if (!e.isDead())
 			return;
 		e.handleDeath();
-		if (e instanceof Protozoan)
-			nProtozoa--;
-		else if (e instanceof PlantCell)
-			nPlants--;
-		else if (e instanceof MeatCell)
-			nMeat--;
+		if (e instanceof Protozoan) {
+			Protozoan p = (Protozoan) e;
+			species.remove(p.getSpecies());
+			phylogeny.recordDeath(p.getLineageId(), elapsedTime);
+		}
+		AtomicInteger counter = getCounter(e.getClass());
+		if (counter != null)
+			counter.decrementAndGet();
 	}
 
 	private void handleNewProtozoa(Protozoan p) {
-		protozoaBorn++;
-		generation = Math.max(generation, p.getGeneration());
+		protozoaBorn.increment();
+		generation.accumulateAndGet(p.getGeneration(), Math::max);
+
+		NetworkGenome networkGenome = p.getGenome().getGeneValue(ProtozoaGenome.NETWORK_GENE);
+		if (networkGenome != null)
+			p.setSpecies(species.assign(networkGenome, p.getSpecies()));
+		p.setLineageId(phylogeny.recordBirth(p.getParentLineageId(), p.getMateLineageId(), elapsedTime));
 
 		if (genomeFile != null && Settings.writeGenomes) {
 			String genomeLine = p.getGeneration() + "," + elapsedTime + "," + p.getGenome().toString();
@@ -228,7 +258,7 @@ public class Tank implements Iterable<Cell>, Serializable
 		}
 	}
 
-	public int getCount(Class<? extends Cell> cellType) {
+	private AtomicInteger getCounter(Class<? extends Cell> cellType) {
 		if (cellType == Protozoan.class)
 			return nProtozoa;
 		else if (cellType == PlantCell.class)
@@ -236,7 +266,12 @@ public class Tank implements Iterable<Cell>, Serializable
 		else if (cellType == MeatCell.class)
 			return nMeat;
 		else
-			return 0;
+			return null;
+	}
+
+	public int getCount(Class<? extends Cell> cellType) {
+		AtomicInteger counter = getCounter(cellType);
+		return counter == null ? 0 : counter.get();
 	}
 
 	public int getCapacity(Class<? extends Cell> cellType) {
@@ -250,18 +285,30 @@ public class Tank implements Iterable<Cell>, Serializable
 			return 0;
 	}
 
+	/**
+	 * Claims a slot for a new cell of the given counter's type.
+	 * @return false if the tank is already at capacity for that type
+	 */
+	private boolean reserveCapacity(AtomicInteger counter, int capacity) {
+		int count;
+		do {
+			count = counter.get();
+			if (count >= capacity)
+				return false;
+		} while (!counter.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Queues a cell to join the tank at the start of the next update.
+	 * Safe to call concurrently from the parallel update passes.
+	 */
 	public void add(Cell e) {
-		if (getCount(e.getClass()) >= getCapacity(e.getClass()))
+		AtomicInteger counter = getCounter(e.getClass());
+		if (counter == null || !reserveCapacity(counter, getCapacity(e.getClass())))
 			return;
 
-		totalCellsAdded++;
-		if (e instanceof Protozoan)
-			nProtozoa++;
-		else if (e instanceof PlantCell)
-			nPlants++;
-		else if (e instanceof MeatCell)
-			nMeat++;
-
+		totalCellsAdded.increment();
 		entitiesToAdd.add(e);
 
 		if (e instanceof Protozoan)
@@ -275,15 +322,18 @@ public class Tank implements Iterable<Cell>, Serializable
 	public Map<String, Float> getStats(boolean includeProtozoaStats) {
 		Map<String, Float> stats = new TreeMap<>();
 		stats.put("Protozoa", (float) numberOfProtozoa());
-		stats.put("Plants", (float) nPlants);
-		stats.put("Meat Pellets", (float) nMeat);
-		stats.put("Max Generation", (float) generation);
+		stats.put("Plants", (float) nPlants.get());
+		stats.put("Meat Pellets", (float) nMeat.get());
+		stats.put("Max Generation", (float) generation.get());
 		stats.put("Time Elapsed", elapsedTime);
-		stats.put("Protozoa Born", (float) protozoaBorn);
-		stats.put("Total Entities Born", (float) totalCellsAdded);
-		stats.put("Crossover Events", (float) crossoverEvents);
-		if (includeProtozoaStats)
+		stats.put("Protozoa Born", (float) protozoaBorn.sum());
+		stats.put("Total Entities Born", (float) totalCellsAdded.sum());
+		stats.put("Crossover Events", (float) crossoverEvents.sum());
+		stats.put("Species", (float) species.numberOfSpecies());
+		if (includeProtozoaStats) {
+			stats.put("Surviving Clades", (float) phylogeny.survivingCladeSizes().size());
 			stats.putAll(getProtozoaStats());
+		}
 		return stats;
 	}
 
@@ -291,51 +341,62 @@ public class Tank implements Iterable<Cell>, Serializable
 		return getStats(false);
 	}
 
+	/**
+	 * Gathers the sum, mean and variance of every protozoan statistic in one parallel pass over the cells.
+	 * Each partition of the cells fills its own accumulator, and the accumulators are merged at the end.
+	 * A statistic a protozoan does not report counts as 0 for that protozoan.
+	 */
 	public Map<String, Float> getProtozoaStats() {
-		Map<String, Float> stats = new TreeMap<>();
-		Collection<Protozoan> protozoa = chunkManager.getAllCells()
-				.stream()
-				.filter(cell -> cell instanceof Protozoan)
-				.map(cell -> (Protozoan) cell)
-				.collect(Collectors.toSet());
-
-		for (Cell e : protozoa) {
-			for (Map.Entry<String, Float> stat : e.getStats().entrySet()) {
-				String key = "Sum " + stat.getKey();
-				float currentValue = stats.getOrDefault(key, 0f);
-				stats.put(key, stat.getValue() + currentValue);
+		List<Cell> cells = chunkManager.getAllCells();
+		SimulationExecutor executor = SimulationExecutor.getInstance();
+		int nPartitions = Math.max(1, Math.min(cells.size(), 4 * executor.getParallelism()));
+		int nStats = StatSchema.size();
+		StatsAccumulator[] partitions = new StatsAccumulator[nPartitions];
+
+		executor.forRange("Protozoa Stats", 0, nPartitions, p -> {
+			StatsAccumulator accumulator = new StatsAccumulator(nStats);
+			float[] values = new float[nStats];
+			int from = (int) ((long) cells.size() * p / nPartitions);
+			int to = (int) ((long) cells.size() * (p + 1) / nPartitions);
+			for (int i = from; i < to; i++) {
+				Cell cell = cells.get(i);
+				if (cell instanceof Protozoan) {
+					Arrays.fill(values, Float.NaN);
+					cell.writeStats(values);
+					accumulator.add(values);
+				}
 			}
-		}
+			partitions[p] = accumulator;
+		});
 
-		int numProtozoa = protozoa.size();
-		for (Cell e : protozoa) {
-			for (Map.Entry<String, Float> stat : e.getStats().entrySet()) {
-				float sumValue = stats.getOrDefault("Sum " + stat.getKey(), 0f);
-				float mean = sumValue / numProtozoa;
-				stats.put("Mean " + stat.getKey(), mean);
-				float currVar = stats.getOrDefault("Var " + stat.getKey(), 0f);
-				float deltaVar = (float) Math.pow(stat.getValue() - mean, 2) / numProtozoa;
-				stats.put("Var " + stat.getKey(), currVar + deltaVar);
-			}
-		}
+		StatsAccumulator total = new StatsAccumulator(nStats);
+		for (StatsAccumulator accumulator : partitions)
+			total.merge(accumulator);
+
+		Map<String, Float> stats = new TreeMap<>();
+		total.putStats(stats);
 		return stats;
 	}
 	
 	public int numberOfProtozoa() {
-		return nProtozoa;
+		return nProtozoa.get();
 	}
 	
 	public int numberOfPellets() {
 //		int nPellets = cellCounts.getOrDefault(PlantCell.class, 0);
 //		nPellets += cellCounts.getOrDefault(MeatCell.class, 0);
 //		return nPellets;
-		return nPlants + nMeat;
+		return nPlants.get() + nMeat.get();
 	}
 
 	public ChunkManager getChunkManager() {
 		return chunkManager;
 	}
 
+	public Phylogeny getPhylogeny() {
+		return phylogeny;
+	}
+
 	@Override
 	public Iterator<Cell> iterator() {
 		return chunkManager.getAllCells().iterator();
@@ -346,7 +407,7 @@ public class Tank implements Iterable<Cell>, Serializable
 	}
 
 	public long getGeneration() {
-		return generation;
+		return generation.get();
 	}
 
 	public boolean isCollidingWithAnything(Cell e) {
@@ -382,6 +443,6 @@ public class Tank implements Iterable<Cell>, Serializable
 	}
 
 	public void registerCrossoverEvent() {
-		crossoverEvents++;
+		crossoverEvents.increment();
 	}
 }
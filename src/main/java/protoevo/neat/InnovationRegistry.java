@@ -0,0 +1,87 @@
+package protoevo.neat;
+
+import protoevo.core.Settings;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the innovation numbers of synapse genes. The same connection (by the ids of the neurons it joins)
+ * is given the same number if it arises again within a window of generations, so that the same structural
+ * mutation lines up in crossover across lineages. Safe to use from the parallel update, and saved with the tank
+ * so that numbers carry on from where they were when a save is loaded.
+ */
+public class InnovationRegistry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static class Innovation implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int number;
+        private final long generation;
+
+        Innovation(int number, long generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+    }
+
+    private static volatile InnovationRegistry global = new InnovationRegistry(0, Settings.innovationGenerationWindow);
+
+    private final AtomicInteger nextInnovation;
+    private final ConcurrentHashMap<Long, Innovation> innovations = new ConcurrentHashMap<>();
+    private final int generationWindow;
+    private volatile long generation = 1;
+
+    /**
+     * @param firstInnovation the first number to hand out
+     * @param generationWindow number of generations over which the same connection is given the same number
+     */
+    public InnovationRegistry(int firstInnovation, int generationWindow) {
+        this.nextInnovation = new AtomicInteger(firstInnovation);
+        this.generationWindow = generationWindow;
+    }
+
+    public static InnovationRegistry getGlobal() {
+        return global;
+    }
+
+    public static void setGlobal(InnovationRegistry registry) {
+        global = registry;
+    }
+
+    private static long key(int inId, int outId) {
+        return ((long) inId << 32) | (outId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the innovation number of a connection from neuron {@code inId} to neuron {@code outId}
+     */
+    public int innovationFor(int inId, int outId) {
+        long currentGeneration = generation;
+        return innovations.compute(key(inId, outId), (k, existing) -> {
+            if (existing != null && currentGeneration - existing.generation <= generationWindow)
+                return existing;
+            return new Innovation(nextInnovation.getAndIncrement(), currentGeneration);
+        }).number;
+    }
+
+    /**
+     * Moves the window on to the given generation, forgetting connections that were first seen before it.
+     * Should not be called concurrently with itself.
+     */
+    public void setGeneration(long generation) {
+        if (generation <= this.generation)
+            return;
+        this.generation = generation;
+        innovations.values().removeIf(innovation -> generation - innovation.generation > generationWindow);
+    }
+
+    public int getNextInnovation() {
+        return nextInnovation.get();
+    }
+
+    public int size() {
+        return innovations.size();
+    }
+}
@@ -1,45 +1,73 @@
 package protoevo.neat;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import protoevo.biology.Retina;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Genomes are immutable: mutating one returns a new genome that shares everything that did not change with
+ * the original, so a child's genome costs little more than its mutations and can never alter its parent's.
+ */
 public class NetworkGenome implements Serializable
 {
 	public static final long serialVersionUID = 6145947068527764820L;
-	private NeuronGene[] sensorNeuronGenes, outputNeuronGenes, hiddenNeuronGenes;
-	private int nNeuronGenes;
-	private SynapseGene[] synapseGenes;
-	private Random random = Simulation.RANDOM;
-	private float mutationChance = Settings.globalMutationChance;
-	private Neuron.Activation defaultActivation = Neuron.Activation.LINEAR;
-	private float fitness = 0.0f;
-	private int numMutations = 0, nSensors, nOutputs;
-
-	public NetworkGenome(NetworkGenome other) {
-		setProperties(other);
+	// Label of the sensor that always reads 1, whose synapses are compiled into constant biases
+	public static final String BIAS_SENSOR = "Bias";
+	private final NeuronGene[] sensorNeuronGenes, outputNeuronGenes, hiddenNeuronGenes;
+	private final int nNeuronGenes;
+	private final SynapseGeneList synapseGenes;
+	private final Random random;
+	private final float mutationChance;
+	private final Neuron.Activation defaultActivation;
+	private final float fitness;
+	private final int numMutations, nSensors, nOutputs;
+	private transient long phenotypeHash;
+
+	private static final Cache<Long, CompiledStructure> compiledStructures = CacheBuilder.newBuilder()
+			.maximumSize(Settings.phenotypeCacheSize)
+			.build();
+
+	/**
+	 * A compiled structure and the genome it was compiled from, which is checked on every cache hit so that
+	 * two genomes whose hashes collide never share a structure.
+	 */
+	private static final class CompiledStructure {
+		final NetworkGenome genome;
+		final int connectedInputs;
+		final NetworkStructure structure;
+
+		CompiledStructure(NetworkGenome genome, int connectedInputs, NetworkStructure structure) {
+			this.genome = genome;
+			this.connectedInputs = connectedInputs;
+			this.structure = structure;
+		}
 	}
 
-	public void setProperties(NetworkGenome other)
+	private NetworkGenome(NetworkGenome other,
+						  NeuronGene[] sensorGenes,
+						  NeuronGene[] outputGenes,
+						  NeuronGene[] hiddenGenes,
+						  SynapseGeneList synapseGenes,
+						  int nNeuronGenes,
+						  int numMutations)
 	{
-		sensorNeuronGenes = other.sensorNeuronGenes;
-		outputNeuronGenes = other.outputNeuronGenes;
-		hiddenNeuronGenes = other.hiddenNeuronGenes;
-		synapseGenes = other.synapseGenes;
-		nNeuronGenes = other.nNeuronGenes;
+		this.sensorNeuronGenes = sensorGenes;
+		this.outputNeuronGenes = outputGenes;
+		this.hiddenNeuronGenes = hiddenGenes;
+		this.synapseGenes = synapseGenes;
+		this.nNeuronGenes = nNeuronGenes;
+		this.numMutations = numMutations;
 		random = other.random;
 		mutationChance = other.mutationChance;
 		defaultActivation = other.defaultActivation;
 		fitness = other.fitness;
-		numMutations = other.numMutations;
-		nSensors = other.nSensors;
-		nOutputs = other.nOutputs;
+		nSensors = sensorGenes.length;
+		nOutputs = outputGenes.length;
 	}
 
 	public NetworkGenome() {
@@ -56,7 +84,7 @@ public class NetworkGenome implements Serializable
 		this.nSensors = numInputs;
 		this.nOutputs = numOutputs;
 
-		nNeuronGenes = 0;
+		int nNeuronGenes = 0;
 		sensorNeuronGenes = new NeuronGene[numInputs];
 		for (int i = 0; i < numInputs; i++)
 			sensorNeuronGenes[i] = new NeuronGene(nNeuronGenes++, Neuron.Type.SENSOR, Neuron.Activation.LINEAR);
@@ -66,16 +94,22 @@ public class NetworkGenome implements Serializable
 			outputNeuronGenes[i] = new NeuronGene(nNeuronGenes++, Neuron.Type.OUTPUT, defaultActivation);
 
 		hiddenNeuronGenes = new NeuronGene[0];
+		this.nNeuronGenes = nNeuronGenes;
 
-		synapseGenes = new SynapseGene[numInputs * numOutputs];
+		SynapseGene[] synapseGenes = new SynapseGene[numInputs * numOutputs];
 		for (int i = 0; i < numInputs; i++)
 			for (int j = 0; j < numOutputs; j++) {
 				NeuronGene in = sensorNeuronGenes[i];
 				NeuronGene out = outputNeuronGenes[j];
 				synapseGenes[i*numOutputs + j] = new SynapseGene(in, out);
 			}
+		this.synapseGenes = SynapseGeneList.of(synapseGenes);
 
 		this.defaultActivation = defaultActivation;
+		random = Simulation.RANDOM;
+		mutationChance = Settings.globalMutationChance;
+		fitness = 0.0f;
+		numMutations = 0;
 	}
 
 	public NetworkGenome(NeuronGene[] sensorGenes,
@@ -86,93 +120,90 @@ public class NetworkGenome implements Serializable
 		this.sensorNeuronGenes = sensorGenes;
 		this.outputNeuronGenes = outputGenes;
 		this.hiddenNeuronGenes = hiddenGenes;
-		this.synapseGenes = synapseGenes;
+		this.synapseGenes = SynapseGeneList.of(synapseGenes);
 		this.defaultActivation = activation;
 
 		nSensors = sensorGenes.length;
 		nOutputs = outputGenes.length;
 		nNeuronGenes = nSensors + nOutputs + hiddenGenes.length;
+		random = Simulation.RANDOM;
+		mutationChance = Settings.globalMutationChance;
+		fitness = 0.0f;
+		numMutations = 0;
 	}
 
-	public void addSensor(String label) {
+	private static NeuronGene[] append(NeuronGene[] genes, NeuronGene gene) {
+		NeuronGene[] newGenes = Arrays.copyOf(genes, genes.length + 1);
+		newGenes[genes.length] = gene;
+		return newGenes;
+	}
+
+	public NetworkGenome addSensor(String label) {
 		NeuronGene n = new NeuronGene(
-				nNeuronGenes++, Neuron.Type.SENSOR, Neuron.Activation.LINEAR, label
+				nNeuronGenes, Neuron.Type.SENSOR, Neuron.Activation.LINEAR, label
 		);
 
-		sensorNeuronGenes = Arrays.copyOf(sensorNeuronGenes, sensorNeuronGenes.length + 1);
-		sensorNeuronGenes[sensorNeuronGenes.length - 1] = n;
-		nSensors++;
+		SynapseGeneList newSynapseGenes = synapseGenes;
+		for (NeuronGene output : outputNeuronGenes)
+			newSynapseGenes = newSynapseGenes.with(new SynapseGene(n, output));
 
-		int originalLen = synapseGenes.length;
-		synapseGenes = Arrays.copyOf(synapseGenes, originalLen + outputNeuronGenes.length);
-		for (int i = 0; i < outputNeuronGenes.length; i++)
-			synapseGenes[originalLen + i] = new SynapseGene(n, outputNeuronGenes[i]);
+		return new NetworkGenome(this, append(sensorNeuronGenes, n), outputNeuronGenes, hiddenNeuronGenes,
+				newSynapseGenes, nNeuronGenes + 1, numMutations);
 	}
 
-	public void addOutput(String label) {
+	public NetworkGenome addOutput(String label) {
 		NeuronGene n = new NeuronGene(
-				nNeuronGenes++, Neuron.Type.OUTPUT, defaultActivation, label
+				nNeuronGenes, Neuron.Type.OUTPUT, defaultActivation, label
 		);
 
-		outputNeuronGenes = Arrays.copyOf(outputNeuronGenes, outputNeuronGenes.length + 1);
-		outputNeuronGenes[outputNeuronGenes.length - 1] = n;
-		nOutputs++;
+		SynapseGeneList newSynapseGenes = synapseGenes;
+		for (NeuronGene sensor : sensorNeuronGenes)
+			newSynapseGenes = newSynapseGenes.with(new SynapseGene(sensor, n));
 
-		int originalLen = synapseGenes.length;
-		synapseGenes = Arrays.copyOf(synapseGenes, originalLen + sensorNeuronGenes.length);
-		for (int i = 0; i < sensorNeuronGenes.length; i++)
-			synapseGenes[originalLen + i] = new SynapseGene(sensorNeuronGenes[i], n);
+		return new NetworkGenome(this, sensorNeuronGenes, append(outputNeuronGenes, n), hiddenNeuronGenes,
+				newSynapseGenes, nNeuronGenes + 1, numMutations);
 	}
 
-	private void createHiddenBetween(SynapseGene g) {
+	private NetworkGenome createHiddenBetween(SynapseGene g) {
 
 		NeuronGene n = new NeuronGene(
-			nNeuronGenes++, Neuron.Type.HIDDEN, defaultActivation
+			nNeuronGenes, Neuron.Type.HIDDEN, defaultActivation
 		);
 
-		hiddenNeuronGenes = Arrays.copyOf(hiddenNeuronGenes, hiddenNeuronGenes.length + 1);
-		hiddenNeuronGenes[hiddenNeuronGenes.length - 1] = n;
-
 		SynapseGene inConnection = new SynapseGene(g.getIn(), n, 1f);
 		SynapseGene outConnection = new SynapseGene(n, g.getOut(), g.getWeight());
 
-		synapseGenes = Arrays.copyOf(synapseGenes, synapseGenes.length + 2);
-		synapseGenes[synapseGenes.length - 2] = inConnection;
-		synapseGenes[synapseGenes.length - 1] = outConnection;
+		SynapseGeneList newSynapseGenes = synapseGenes
+				.with(inConnection)
+				.with(outConnection)
+				.with(g.withDisabled(true));
 
-		g.setDisabled(true);
+		return new NetworkGenome(this, sensorNeuronGenes, outputNeuronGenes, append(hiddenNeuronGenes, n),
+				newSynapseGenes, nNeuronGenes + 1, numMutations + 1);
 	}
 
-	private int getSynapseGeneIndex(NeuronGene in, NeuronGene out) {
-
-		for (int i = 0; i < synapseGenes.length - 2; i++) {
-			if (synapseGenes[i].getIn().equals(in) &&
-					synapseGenes[i].getOut().equals(out) &&
-					!synapseGenes[i].isDisabled()) {
-				return i;
-			}
+	private SynapseGene getEnabledSynapseGene(NeuronGene in, NeuronGene out) {
+		for (SynapseGene g : synapseGenes) {
+			if (g.getIn().equals(in) && g.getOut().equals(out) && !g.isDisabled())
+				return g;
 		}
-		return -1;
+		return null;
 	}
 	
-	private void mutateConnection(NeuronGene in, NeuronGene out) {
-		numMutations++;
+	private NetworkGenome mutateConnection(NeuronGene in, NeuronGene out) {
+		SynapseGene g = getEnabledSynapseGene(in, out);
 
-		int geneIndex = getSynapseGeneIndex(in, out);
+		if (g != null && random.nextBoolean())
+			return createHiddenBetween(g);
 
-		if (geneIndex == -1) {
-			synapseGenes = Arrays.copyOf(synapseGenes, synapseGenes.length + 1);
-			synapseGenes[synapseGenes.length - 1] = new SynapseGene(in, out);
-		} else {
-			SynapseGene g = synapseGenes[geneIndex];
-			if (random.nextBoolean())
-				createHiddenBetween(g);
-			else
-				synapseGenes[geneIndex] = new SynapseGene(in, out, SynapseGene.randomInitialWeight(), g.getInnovation());
-		}
+		SynapseGene newGene = g == null ?
+				new SynapseGene(in, out) :
+				new SynapseGene(in, out, SynapseGene.randomInitialWeight(), g.getInnovation());
+		return new NetworkGenome(this, sensorNeuronGenes, outputNeuronGenes, hiddenNeuronGenes,
+				synapseGenes.with(newGene), nNeuronGenes, numMutations + 1);
 	}
 	
-	public void mutate()
+	public NetworkGenome mutate()
 	{
 		int i = random.nextInt(sensorNeuronGenes.length + hiddenNeuronGenes.length);
 		NeuronGene in, out;
@@ -185,75 +216,90 @@ public class NetworkGenome implements Serializable
 			out = hiddenNeuronGenes[j];
 		else out = outputNeuronGenes[j - hiddenNeuronGenes.length];
 
-		mutateConnection(in, out);
+		return mutateConnection(in, out);
 	}
-	
+
 	public NetworkGenome crossover(NetworkGenome other)
 	{
-		Map<Integer, SynapseGene> myConnections = Arrays.stream(synapseGenes)
-				.collect(Collectors.toMap(SynapseGene::getInnovation, Function.identity()));
-		Map<Integer, SynapseGene> theirConnections = Arrays.stream(other.synapseGenes)
-				.collect(Collectors.toMap(SynapseGene::getInnovation, Function.identity()));
-
-		Set<Integer> innovationNumbers = new HashSet<>();
-		innovationNumbers.addAll(myConnections.keySet());
-		innovationNumbers.addAll(theirConnections.keySet());
-
-		HashSet<SynapseGene> childSynapses = new HashSet<>();
-
-		for (int innovation : innovationNumbers) {
-			boolean iContain = myConnections.containsKey(innovation);
-			boolean theyContain = theirConnections.containsKey(innovation);
+		SynapseGene[] mine = synapseGenes.toArray();
+		SynapseGene[] theirs = other.synapseGenes.toArray();
+
+		SynapseGene[] childSynapses = new SynapseGene[mine.length + theirs.length];
+		NeuronGene[] neuronsById = new NeuronGene[Math.max(maxNeuronId(), other.maxNeuronId()) + 1];
+		BitSet neuronIds = new BitSet(neuronsById.length);
+		int[] typeCounts = new int[Neuron.Type.values().length];
+		Set<Long> endpoints = new HashSet<>();
+		int nSynapses = 0;
+
+		// Merge-join the two innovation-sorted gene lists
+		int i = 0, j = 0;
+		while (i < mine.length || j < theirs.length) {
 			SynapseGene g;
-			if (iContain && theyContain) {
-				g = Simulation.RANDOM.nextBoolean() ?
-						myConnections.get(innovation) :
-						theirConnections.get(innovation);
+			if (i < mine.length && j < theirs.length
+					&& mine[i].getInnovation() == theirs[j].getInnovation()) {
+				g = Simulation.RANDOM.nextBoolean() ? mine[i] : theirs[j];
+				i++;
+				j++;
 				if (g.isDisabled() && Simulation.RANDOM.nextFloat() < Settings.globalMutationChance)
-					g.setDisabled(false);
-				childSynapses.add(g);
-				continue;
-
-			} else if (iContain) {
-				g = myConnections.get(innovation);
+					g = g.withDisabled(false);
 			} else {
-				g = theirConnections.get(innovation);
+				if (j == theirs.length || (i < mine.length && mine[i].getInnovation() < theirs[j].getInnovation()))
+					g = mine[i++];
+				else
+					g = theirs[j++];
+				if (!g.getIn().getType().equals(Neuron.Type.SENSOR) && !Simulation.RANDOM.nextBoolean())
+					continue;
 			}
 
-			if (g.getIn().getType().equals(Neuron.Type.SENSOR) || Simulation.RANDOM.nextBoolean())
-				childSynapses.add(g);
-		}
-
-		SynapseGene[] childSynapseArray = childSynapses.toArray(new SynapseGene[0]);
-
-		Set<NeuronGene> neuronGenes = childSynapses.stream()
-				.flatMap(s -> Stream.of(s.getIn(), s.getOut()))
-				.collect(Collectors.toSet());
-
-		NeuronGene[] childSensorGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.SENSOR))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
+			// Lineages that split long ago can give the same connection different innovations; keep the first
+			if (!endpoints.add((long) g.getIn().getId() << 32 | g.getOut().getId()))
+				continue;
 
-		NeuronGene[] childOutputGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.OUTPUT))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
+			childSynapses[nSynapses++] = g;
+			neuronsById = addNeuron(g.getIn(), neuronsById, neuronIds, typeCounts);
+			neuronsById = addNeuron(g.getOut(), neuronsById, neuronIds, typeCounts);
+		}
 
-		NeuronGene[] childHiddenGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.HIDDEN))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
+		NeuronGene[] childSensorGenes = new NeuronGene[typeCounts[Neuron.Type.SENSOR.ordinal()]];
+		NeuronGene[] childOutputGenes = new NeuronGene[typeCounts[Neuron.Type.OUTPUT.ordinal()]];
+		NeuronGene[] childHiddenGenes = new NeuronGene[typeCounts[Neuron.Type.HIDDEN.ordinal()]];
+		int nSensorGenes = 0, nOutputGenes = 0, nHiddenGenes = 0;
+		for (int id = neuronIds.nextSetBit(0); id >= 0; id = neuronIds.nextSetBit(id + 1)) {
+			NeuronGene n = neuronsById[id];
+			switch (n.getType()) {
+				case SENSOR:
+					childSensorGenes[nSensorGenes++] = n;
+					break;
+				case OUTPUT:
+					childOutputGenes[nOutputGenes++] = n;
+					break;
+				case HIDDEN:
+					childHiddenGenes[nHiddenGenes++] = n;
+					break;
+			}
+		}
 
 		return new NetworkGenome(
 				childSensorGenes,
 				childOutputGenes,
 				childHiddenGenes,
-				childSynapseArray,
+				Arrays.copyOf(childSynapses, nSynapses),
 				defaultActivation
 		);
 	}
 
+	private static NeuronGene[] addNeuron(NeuronGene n, NeuronGene[] neuronsById, BitSet neuronIds, int[] typeCounts) {
+		int id = n.getId();
+		if (neuronIds.get(id))
+			return neuronsById;
+		if (id >= neuronsById.length)
+			neuronsById = Arrays.copyOf(neuronsById, Math.max(id + 1, 2 * neuronsById.length));
+		neuronsById[id] = n;
+		neuronIds.set(id);
+		typeCounts[n.getType().ordinal()]++;
+		return neuronsById;
+	}
+
 	private int maxNeuronId() {
 		int id = 0;
 		for (NeuronGene g : sensorNeuronGenes)
@@ -265,56 +311,153 @@ public class NetworkGenome implements Serializable
 		return id;
 	}
 
-	public NeuralNetwork phenotype()
-	{
-
-		Neuron[] neurons = new Neuron[maxNeuronId() + 1];
-
-		for (NeuronGene g : sensorNeuronGenes) {
-
-			Neuron[] inputs = new Neuron[0];
-			float[] weights = new float[0];
-
-			neurons[g.getId()] = new Neuron(
-					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
-			);
+	/**
+	 * @return a hash of everything the phenotype is built from: the neurons, and the synapses with their weights
+	 */
+	private long phenotypeHash() {
+		long hash = phenotypeHash;
+		if (hash != 0)
+			return hash;
+
+		for (NeuronGene[] genes : new NeuronGene[][]{sensorNeuronGenes, hiddenNeuronGenes, outputNeuronGenes}) {
+			for (NeuronGene g : genes) {
+				hash = mix(hash, g.getId());
+				hash = mix(hash, g.getType().ordinal());
+				hash = mix(hash, System.identityHashCode(g.getActivation()));
+				hash = mix(hash, Objects.hashCode(g.getLabel()));
+			}
 		}
+		for (SynapseGene g : synapseGenes) {
+			hash = mix(hash, g.getIn().getId());
+			hash = mix(hash, g.getOut().getId());
+			hash = mix(hash, Float.floatToIntBits(g.getWeight()));
+			hash = mix(hash, g.isDisabled() ? 1 : 0);
+		}
+		phenotypeHash = hash == 0 ? 1 : hash;
+		return phenotypeHash;
+	}
 
-		int[] inputCounts = new int[neurons.length];
-		Arrays.fill(inputCounts, 0);
-
-		for (SynapseGene g : synapseGenes)
-			inputCounts[g.getOut().getId()]++;
+	/**
+	 * @return whether the other genome has the same neurons and synapses as this one, compared by everything
+	 * {@link #phenotypeHash()} covers
+	 */
+	private boolean encodesSameNetwork(NetworkGenome other) {
+		if (other == this)
+			return true;
+		if (!sameNeurons(sensorNeuronGenes, other.sensorNeuronGenes)
+				|| !sameNeurons(hiddenNeuronGenes, other.hiddenNeuronGenes)
+				|| !sameNeurons(outputNeuronGenes, other.outputNeuronGenes))
+			return false;
+		if (synapseGenes == other.synapseGenes)
+			return true;
+		if (synapseGenes.size() != other.synapseGenes.size())
+			return false;
+		Iterator<SynapseGene> theirs = other.synapseGenes.iterator();
+		for (SynapseGene a : synapseGenes) {
+			SynapseGene b = theirs.next();
+			if (a.getIn().getId() != b.getIn().getId()
+					|| a.getOut().getId() != b.getOut().getId()
+					|| Float.floatToIntBits(a.getWeight()) != Float.floatToIntBits(b.getWeight())
+					|| a.isDisabled() != b.isDisabled())
+				return false;
+		}
+		return true;
+	}
 
-		for (int i = 0; i < hiddenNeuronGenes.length + outputNeuronGenes.length; i++) {
-			NeuronGene g;
-			if (i < hiddenNeuronGenes.length)
-				g = hiddenNeuronGenes[i];
-			else g = outputNeuronGenes[i - hiddenNeuronGenes.length];
+	private static boolean sameNeurons(NeuronGene[] a, NeuronGene[] b) {
+		if (a == b)
+			return true;
+		if (a.length != b.length)
+			return false;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i].getId() != b[i].getId()
+					|| a[i].getType() != b[i].getType()
+					|| a[i].getActivation() != b[i].getActivation()
+					|| !Objects.equals(a[i].getLabel(), b[i].getLabel()))
+				return false;
+		}
+		return true;
+	}
 
-			Neuron[] inputs = new Neuron[inputCounts[g.getId()]];
-			float[] weights = new float[inputCounts[g.getId()]];
+	private static long mix(long hash, int value) {
+		hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
 
-			neurons[g.getId()] = new Neuron(
-					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
-			);
-		}
+	/**
+	 * Builds the network this genome encodes. Genomes that encode the same network, most often a child's
+	 * unmutated copy of its parent's, share one compiled structure from a bounded cache keyed by a 64-bit hash
+	 * of the genome, and each network only allocates its own state. A cached structure is only used if the
+	 * genome it was compiled from encodes the same network, so a hash collision costs a recompile.
+	 */
+	public NeuralNetwork phenotype()
+	{
+		return phenotype(nSensors);
+	}
 
-		Arrays.fill(inputCounts, 0);
-		for (SynapseGene g : synapseGenes) {
-			int i = inputCounts[g.getOut().getId()]++;
-			neurons[g.getOut().getId()].getInputs()[i] = neurons[g.getIn().getId()];
-			neurons[g.getOut().getId()].getWeights()[i] = g.getWeight();
+	/**
+	 * Builds the network this genome encodes, leaving out the sensors past the given number, which will not
+	 * be given inputs, and everything that only they feed.
+	 */
+	public NeuralNetwork phenotype(int connectedInputs)
+	{
+		connectedInputs = Math.min(connectedInputs, nSensors);
+		long hash = mix(phenotypeHash(), connectedInputs);
+		CompiledStructure compiled = compiledStructures.getIfPresent(hash);
+		NetworkStructure structure;
+		if (compiled != null && compiled.connectedInputs == connectedInputs && encodesSameNetwork(compiled.genome)) {
+			structure = compiled.structure;
+		} else {
+			NeuronGene[] neuronGenes = new NeuronGene[maxNeuronId() + 1];
+			for (NeuronGene[] genes : new NeuronGene[][]{sensorNeuronGenes, hiddenNeuronGenes, outputNeuronGenes})
+				for (NeuronGene g : genes)
+					neuronGenes[g.getId()] = g;
+			structure = new NetworkStructure(neuronGenes, synapseGenes.toArray(), connectedInputs);
+			compiledStructures.put(hash, new CompiledStructure(this, connectedInputs, structure));
 		}
-
-		return new NeuralNetwork(neurons);
+		NeuralNetwork network = new NeuralNetwork(structure);
+		network.disableInputsFrom(connectedInputs);
+		return network;
 	}
 
+	/**
+	 * NEAT compatibility distance: c1 E / N + c2 D / N + c3 W, where E and D are the numbers of excess and disjoint
+	 * synapse genes, W is the mean weight difference of the matching genes, and N is the number of genes in the
+	 * larger genome (or 1 for genomes of fewer than 20 genes). Walks both innovation-sorted gene lists once.
+	 */
 	public float distance(NetworkGenome other)
 	{
-//		int excess = 0;
-//		int disjoint = 0;
-		return 0;
+		Iterator<SynapseGene> mine = synapseGenes.iterator();
+		Iterator<SynapseGene> theirs = other.synapseGenes.iterator();
+		SynapseGene a = mine.hasNext() ? mine.next() : null;
+		SynapseGene b = theirs.hasNext() ? theirs.next() : null;
+
+		int disjoint = 0, matching = 0;
+		float weightDifference = 0;
+		while (a != null && b != null) {
+			if (a.getInnovation() == b.getInnovation()) {
+				weightDifference += Math.abs(a.getWeight() - b.getWeight());
+				matching++;
+				a = mine.hasNext() ? mine.next() : null;
+				b = theirs.hasNext() ? theirs.next() : null;
+			} else if (a.getInnovation() < b.getInnovation()) {
+				disjoint++;
+				a = mine.hasNext() ? mine.next() : null;
+			} else {
+				disjoint++;
+				b = theirs.hasNext() ? theirs.next() : null;
+			}
+		}
+		// Whatever is left of either list lies beyond the end of the other
+		int excess = synapseGenes.size() + other.synapseGenes.size() - 2 * matching - disjoint;
+
+		int n = Math.max(synapseGenes.size(), other.synapseGenes.size());
+		if (n < 20)
+			n = 1;
+		float meanWeightDifference = matching == 0 ? 0 : weightDifference / matching;
+		return Settings.speciesExcessCoefficient * excess / n
+				+ Settings.speciesDisjointCoefficient * disjoint / n
+				+ Settings.speciesWeightCoefficient * meanWeightDifference;
 	}
 
 	public String toString()
@@ -331,7 +474,7 @@ public class NetworkGenome implements Serializable
 		return str.toString();
 	}
 
-	public SynapseGene[] getSynapseGenes() {
+	public SynapseGeneList getSynapseGenes() {
 		return synapseGenes;
 	}
 
@@ -350,15 +493,23 @@ public class NetworkGenome implements Serializable
 		return false;
 	}
 
-	public void ensureRetinaSensorsExist(int retinaSize) {
+	private NetworkGenome ensureSensorExists(String label) {
+		return hasSensor(label) ? this : addSensor(label);
+	}
+
+	/**
+	 * @return a genome with sensors for each retina cell, which is this genome if it already has them all
+	 */
+	public NetworkGenome ensureRetinaSensorsExist(int retinaSize) {
+		NetworkGenome genome = this;
 		for (int i = 0; i < retinaSize; i++) {
 			String label = Retina.retinaCellLabel(i);
-			if (!hasSensor(label + " R"))
-				addSensor(label + " R");
-			if (!hasSensor(label + " G"))
-				addSensor(label + " G");
-			if (!hasSensor(label + " B"))
-				addSensor(label + " B");
+			genome = genome.ensureSensorExists(label + " R")
+					.ensureSensorExists(label + " G")
+					.ensureSensorExists(label + " B");
+			if (Settings.retinaDepthSensors)
+				genome = genome.ensureSensorExists(label + " D");
 		}
+		return genome;
 	}
 }
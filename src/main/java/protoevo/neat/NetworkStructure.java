@@ -0,0 +1,200 @@
+package protoevo.neat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The immutable, compiled form of a network genome: the neurons and their weighted inputs flattened into arrays
+ * indexed by neuron id. It holds no state, so one structure is shared by every network built from the same genome,
+ * each of which keeps only its own state buffers.
+ * <p>
+ * Disabled synapses are left out. Ticking the network only evaluates the neurons connected to an output, and
+ * only sums their inputs from other such neurons: hidden neurons that cannot reach an output, and sensors past
+ * the number of connected inputs, cannot affect the outputs. Inputs from the bias sensor, which always reads 1,
+ * are folded into a constant bias for each neuron.
+ */
+final class NetworkStructure implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int size, depth;
+    final Neuron.Type[] types;
+    final Neuron.Activation[] activations;
+    final String[] labels;
+    final int[] depths;
+    // The inputs of neuron n are inputIds[inputStart[n]] to inputIds[inputStart[n + 1] - 1]
+    final int[] inputStart, inputIds;
+    final float[] weights;
+    final int[] sensorIds, outputIds;
+    final boolean[] connectedToOutput;
+
+    // The neurons evaluated each tick, and their folded biases and inputs, which are
+    // activeInputIds[activeInputStart[i]] to activeInputIds[activeInputStart[i + 1] - 1] for activeIds[i]
+    final int[] activeIds, activeInputStart, activeInputIds;
+    final float[] activeBiases, activeWeights;
+
+    /**
+     * @param connectedInputs the number of sensors, in order of id, that are given inputs
+     */
+    NetworkStructure(NeuronGene[] neuronGenes, SynapseGene[] synapseGenes, int connectedInputs) {
+        size = neuronGenes.length;
+        types = new Neuron.Type[size];
+        activations = new Neuron.Activation[size];
+        labels = new String[size];
+        int nSensors = 0, nOutputs = 0;
+        for (NeuronGene g : neuronGenes) {
+            if (g == null)
+                throw new IllegalArgumentException("Cannot handle null neurons.");
+            types[g.getId()] = g.getType();
+            activations[g.getId()] = g.getActivation();
+            labels[g.getId()] = g.getLabel();
+            if (g.getType().equals(Neuron.Type.SENSOR))
+                nSensors++;
+            else if (g.getType().equals(Neuron.Type.OUTPUT))
+                nOutputs++;
+        }
+
+        sensorIds = new int[nSensors];
+        outputIds = new int[nOutputs];
+        nSensors = 0;
+        nOutputs = 0;
+        for (int n = 0; n < size; n++) {
+            if (types[n].equals(Neuron.Type.SENSOR))
+                sensorIds[nSensors++] = n;
+            else if (types[n].equals(Neuron.Type.OUTPUT))
+                outputIds[nOutputs++] = n;
+        }
+
+        SynapseGene[] enabled = new SynapseGene[synapseGenes.length];
+        int nEnabled = 0;
+        for (SynapseGene g : synapseGenes)
+            if (!g.isDisabled() && !types[g.getOut().getId()].equals(Neuron.Type.SENSOR))
+                enabled[nEnabled++] = g;
+
+        inputStart = new int[size + 1];
+        for (int s = 0; s < nEnabled; s++)
+            inputStart[enabled[s].getOut().getId() + 1]++;
+        for (int n = 0; n < size; n++)
+            inputStart[n + 1] += inputStart[n];
+
+        inputIds = new int[inputStart[size]];
+        weights = new float[inputStart[size]];
+        int[] inputCounts = new int[size];
+        for (int s = 0; s < nEnabled; s++) {
+            SynapseGene g = enabled[s];
+            int out = g.getOut().getId();
+            int i = inputStart[out] + inputCounts[out]++;
+            inputIds[i] = g.getIn().getId();
+            weights[i] = g.getWeight();
+        }
+
+        depths = new int[size];
+        depth = calculateDepths();
+
+        connectedToOutput = findConnectedToOutput(connectedInputs);
+        int nActive = 0, nActiveInputs = 0;
+        for (int n = 0; n < size; n++) {
+            if (!connectedToOutput[n] || types[n].equals(Neuron.Type.SENSOR))
+                continue;
+            nActive++;
+            for (int i = inputStart[n]; i < inputStart[n + 1]; i++)
+                if (isActiveInput(inputIds[i]))
+                    nActiveInputs++;
+        }
+
+        activeIds = new int[nActive];
+        activeBiases = new float[nActive];
+        activeInputStart = new int[nActive + 1];
+        activeInputIds = new int[nActiveInputs];
+        activeWeights = new float[nActiveInputs];
+        int a = 0, j = 0;
+        for (int n = 0; n < size; n++) {
+            if (!connectedToOutput[n] || types[n].equals(Neuron.Type.SENSOR))
+                continue;
+            activeIds[a] = n;
+            for (int i = inputStart[n]; i < inputStart[n + 1]; i++) {
+                int in = inputIds[i];
+                if (isBias(in)) {
+                    activeBiases[a] += weights[i];
+                } else if (isActiveInput(in)) {
+                    activeInputIds[j] = in;
+                    activeWeights[j++] = weights[i];
+                }
+            }
+            activeInputStart[++a] = j;
+        }
+    }
+
+    private boolean isBias(int n) {
+        return types[n].equals(Neuron.Type.SENSOR) && NetworkGenome.BIAS_SENSOR.equals(labels[n]);
+    }
+
+    private boolean isActiveInput(int n) {
+        return connectedToOutput[n] && !isBias(n);
+    }
+
+    /**
+     * Walks back from the outputs along the synapses to find the neurons whose state can reach an output.
+     */
+    private boolean[] findConnectedToOutput(int connectedInputs) {
+        boolean[] connected = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        for (int n : outputIds) {
+            connected[n] = true;
+            stack[top++] = n;
+        }
+        while (top > 0) {
+            int n = stack[--top];
+            for (int i = inputStart[n]; i < inputStart[n + 1]; i++) {
+                int in = inputIds[i];
+                if (!connected[in]) {
+                    connected[in] = true;
+                    if (!types[in].equals(Neuron.Type.SENSOR))
+                        stack[top++] = in;
+                }
+            }
+        }
+        for (int i = connectedInputs; i < sensorIds.length; i++)
+            connected[sensorIds[i]] = false;
+        return connected;
+    }
+
+    private int calculateDepths() {
+        Arrays.fill(depths, -1);
+        boolean[] visited = new boolean[size];
+        int depth = calculateDepth(outputIds, 0, outputIds.length, visited);
+
+        for (int n : outputIds)
+            depths[n] = depth;
+
+        for (int n : sensorIds)
+            depths[n] = 0;
+
+        for (int n = 0; n < size; n++)
+            if (depths[n] == -1)
+                depths[n] = depth;
+
+        return depth;
+    }
+
+    private int calculateDepth(int[] ids, int from, int to, boolean[] visited) {
+        int[] unexplored = new int[to - from];
+        int nUnexplored = 0;
+        for (int i = from; i < to; i++)
+            if (!visited[ids[i]])
+                unexplored[nUnexplored++] = ids[i];
+
+        for (int i = from; i < to; i++)
+            visited[ids[i]] = true;
+
+        int maxDepth = 0;
+        for (int i = 0; i < nUnexplored; i++) {
+            int n = unexplored[i];
+            int neuronDepth = 1 + calculateDepth(inputIds, inputStart[n], inputStart[n + 1], visited);
+            depths[n] = neuronDepth;
+            maxDepth = Math.max(maxDepth, neuronDepth);
+        }
+
+        return maxDepth;
+    }
+}
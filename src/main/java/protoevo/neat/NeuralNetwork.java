@@ -9,129 +9,143 @@ public class NeuralNetwork implements Serializable
 {
     private static final long serialVersionUID = 1L;
 
-    private final Neuron[] outputNeurons;
-    private final Neuron[] inputNeurons;
+    private final NetworkStructure structure;
+    private float[] state, lastState, nextState;
     private final float[] outputs;
-    private final Neuron[] neurons;
-    private final int depth;
-    private final int nInputs;
+    private int disabledInputsFrom;
+    private transient Neuron[] neurons;
     private boolean computedGraphics = false;
     private int nodeSpacing;
 
-    public NeuralNetwork(Neuron[] neurons) {
-        this.neurons = neurons;
-
-        int nSensors = 0;
-        int nOutputs = 0;
-        for (Neuron neuron : neurons) {
-            if (neuron == null)
-                throw new IllegalArgumentException("Cannot handle null neurons.");
-            else if (neuron.getType().equals(Neuron.Type.SENSOR))
-                nSensors++;
-            else if (neuron.getType().equals(Neuron.Type.OUTPUT))
-                nOutputs++;
-        }
-        this.nInputs = nSensors;
-
-        inputNeurons = new Neuron[nInputs];
-        int i = 0;
-        for (Neuron neuron : neurons)
-            if (neuron.getType().equals(Neuron.Type.SENSOR)) {
-                inputNeurons[i] = neuron;
-                i++;
-            }
-
-        outputNeurons = new Neuron[nOutputs];
-        i = 0;
-        for (Neuron neuron : neurons)
-            if (neuron.getType().equals(Neuron.Type.OUTPUT)) {
-                outputNeurons[i] = neuron;
-                i++;
-            }
-
-        outputs = new float[nOutputs];
-        Arrays.fill(outputs, 0f);
-
-        depth = calculateDepth();
+    NeuralNetwork(NetworkStructure structure) {
+        this.structure = structure;
+        state = new float[structure.size];
+        lastState = new float[structure.size];
+        nextState = new float[structure.size];
+        outputs = new float[structure.outputIds.length];
+        disabledInputsFrom = structure.sensorIds.length;
     }
 
     public int getDepth() {
-        return depth;
+        return structure.depth;
     }
 
     public int calculateDepth() {
-        boolean[] visited = new boolean[neurons.length];
-        Arrays.fill(visited, false);
-        int depth = calculateDepth(outputNeurons, visited);
-
-        for (Neuron n : outputNeurons)
-            n.setDepth(depth);
-
-        for (Neuron n : inputNeurons)
-            n.setDepth(0);
-
-        for (Neuron n : neurons)
-            if (n.getDepth() == -1)
-                n.setDepth(depth);
-
-        return depth;
-    }
-
-    private int calculateDepth(Neuron[] explore, boolean[] visited) {
-
-        List<Neuron> unexplored = Arrays.stream(explore)
-                .filter(n -> !visited[n.getId()])
-                .collect(Collectors.toList());
-
-        for (Neuron n : explore)
-            visited[n.getId()] = true;
-
-        int maxDepth = 0;
-
-        for (Neuron n : unexplored) {
-            int neuronDepth = 1 + calculateDepth(n.getInputs(), visited);
-            n.setDepth(neuronDepth);
-            maxDepth = Math.max(maxDepth, neuronDepth);
-        }
-
-        return maxDepth;
+        return structure.depth;
     }
 
     public void setInput(float ... values) {
         for (int i = 0; i < values.length; i++)
-            inputNeurons[i].setState(values[i]);
+            state[structure.sensorIds[i]] = values[i];
     }
 
     public void tick()
     {
-        for (Neuron n : neurons) n.tick();
-        for (Neuron n : neurons) n.update();
+        int[] activeIds = structure.activeIds;
+        int[] inputStart = structure.activeInputStart;
+        int[] inputIds = structure.activeInputIds;
+        float[] biases = structure.activeBiases;
+        float[] weights = structure.activeWeights;
+        for (int a = 0; a < activeIds.length; a++) {
+            float z = biases[a];
+            for (int i = inputStart[a]; i < inputStart[a + 1]; i++)
+                z += state[inputIds[i]] * weights[i];
+            nextState[activeIds[a]] = structure.activations[activeIds[a]].apply(z);
+        }
+        // Sensors hold their input until it is next set
+        for (int n : structure.sensorIds)
+            nextState[n] = state[n];
+
+        float[] previous = lastState;
+        lastState = state;
+        state = nextState;
+        nextState = previous;
     }
 
     public float[] outputs()
     {
-        for (int i = 0; i < outputNeurons.length; i++)
-            outputs[i] = outputNeurons[i].getState();
+        for (int i = 0; i < outputs.length; i++)
+            outputs[i] = state[structure.outputIds[i]];
         return outputs;
     }
 
+    /**
+     * Copies the state of this network into a network sharing its structure, which can be inspected while
+     * this one keeps ticking.
+     * @param copy a copy made earlier to overwrite, or null
+     * @return the copy, which is a new network if the given one was null or of a different structure
+     */
+    public NeuralNetwork copyState(NeuralNetwork copy) {
+        if (copy == null || copy.structure != structure)
+            copy = new NeuralNetwork(structure);
+        System.arraycopy(state, 0, copy.state, 0, state.length);
+        System.arraycopy(lastState, 0, copy.lastState, 0, lastState.length);
+        copy.disabledInputsFrom = disabledInputsFrom;
+        return copy;
+    }
+
+    float getState(int id) {
+        return state[id];
+    }
+
+    float getLastState(int id) {
+        return lastState[id];
+    }
+
+    NetworkStructure getStructure() {
+        return structure;
+    }
+
+    boolean isConnectedToOutput(int id) {
+        if (!structure.connectedToOutput[id])
+            return false;
+        if (!structure.types[id].equals(Neuron.Type.SENSOR))
+            return true;
+        return Arrays.binarySearch(structure.sensorIds, id) < disabledInputsFrom;
+    }
+
     @Override
     public String toString()
     {
-        return Stream.of(neurons)
+        return Stream.of(getNeurons())
                 .map(Neuron::toString)
                 .collect(Collectors.joining("\n"));
     }
 
     public int getInputSize() {
-        return nInputs;
+        return structure.sensorIds.length;
     }
 
     public int getSize() {
-        return neurons.length;
+        return structure.size;
+    }
+
+    /**
+     * @return the number of neurons evaluated each tick, which leaves out the sensors and the neurons that
+     * cannot reach an output
+     */
+    public int getActiveSize() {
+        return structure.activeIds.length;
     }
 
+    /**
+     * @return the number of synapses evaluated each tick, which leaves out disabled synapses, those folded
+     * into biases, and those from neurons that cannot reach an output
+     */
+    public int getActiveConnections() {
+        return structure.activeInputIds.length;
+    }
+
+    /**
+     * @return views of the neurons for inspecting the network, which are only created when first asked for
+     */
     public Neuron[] getNeurons() {
+        if (neurons == null) {
+            Neuron[] views = new Neuron[structure.size];
+            for (int id = 0; id < views.length; id++)
+                views[id] = new Neuron(this, id);
+            neurons = views;
+        }
         return neurons;
     }
 
@@ -152,30 +166,6 @@ public class NeuralNetwork implements Serializable
     }
 
     public void disableInputsFrom(int i) {
-        for (int idx = i; idx < inputNeurons.length; idx++)
-            inputNeurons[idx].setConnectedToOutput(false);
-//        disableOnlyConnectedToDisabled();
-    }
-
-    private void disableOnlyConnectedToDisabled() {
-        boolean check = true;
-        while (check) {
-            check = false;
-            for (Neuron neuron : neurons) {
-                if (!neuron.isConnectedToOutput())
-                    continue;
-
-                boolean allInputsDisabled = true;
-                for (Neuron input : neuron.getInputs())
-                    if (!input.isConnectedToOutput()) {
-                        allInputsDisabled = false;
-                        break;
-                    }
-                if (allInputsDisabled) {
-                    neuron.setConnectedToOutput(false);
-                    check = true;
-                }
-            }
-        }
+        disabledInputsFrom = Math.min(disabledInputsFrom, i);
     }
 }
@@ -1,13 +1,17 @@
 package protoevo.neat;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.function.Function;
 
 /**
  * Created by dylan on 26/05/2017.
+ *
+ * A view of one neuron of a {@link NeuralNetwork}, for inspecting the network. The network itself keeps its
+ * neurons in arrays, and only creates these when asked for them.
  */
-public class Neuron implements Comparable<Neuron>, Serializable {
+public class Neuron implements Comparable<Neuron> {
 
     public interface Activation extends Function<Float, Float>, Serializable {
         Activation SIGMOID = z -> 1 / (1 + (float) Math.exp(-z));
@@ -29,45 +33,16 @@ public class Neuron implements Comparable<Neuron>, Serializable {
         }
     }
 
-    private static final long serialVersionUID = 1L;
-
-    private final Neuron[] inputs;
-    private final float[] weights;
-    private Type type;
+    private final NeuralNetwork network;
     private final int id;
-    private float state = 0, lastState = 0, nextState = 0;
-    private float learningRate = 0;
-    private Activation activation;
-    private int depth = -1;
+    private Neuron[] inputs;
+    private float[] weights;
     private int graphicsX = -1, graphicsY = -1;
-    private boolean connectedToOutput = true;
-    private final String label;
 
-    public Neuron(int id, Neuron[] inputs, float[] weights, Type type, Activation activation, String label)
+    Neuron(NeuralNetwork network, int id)
     {
+        this.network = network;
         this.id = id;
-        this.inputs = inputs;
-        this.weights = weights;
-        this.type = type;
-        this.activation = activation;
-        this.label = label;
-
-        if (type.equals(Type.OUTPUT))
-            connectedToOutput = true;
-    }
-
-    void tick()
-    {
-        nextState = 0.0f;
-        for (int i = 0; i < inputs.length; i++)
-            nextState += inputs[i].getState() * weights[i];
-        nextState = activation.apply(nextState);
-    }
-
-    void update()
-    {
-        lastState = state;
-        state = nextState;
     }
 
     @Override
@@ -82,46 +57,35 @@ public class Neuron implements Comparable<Neuron>, Serializable {
     }
 
     public float getState() {
-        return state;
+        return network.getState(id);
     }
 
     public float getLastState() {
-        return lastState;
-    }
-
-    public Neuron setState(float s) {
-        state = s;
-        return this;
-    }
-
-    public Neuron setActivation(Neuron.Activation activation) {
-        this.activation = activation;
-        return this;
+        return network.getLastState(id);
     }
 
     public Neuron[] getInputs() {
+        if (inputs == null) {
+            NetworkStructure structure = network.getStructure();
+            Neuron[] neurons = network.getNeurons();
+            Neuron[] inputs = new Neuron[structure.inputStart[id + 1] - structure.inputStart[id]];
+            for (int i = 0; i < inputs.length; i++)
+                inputs[i] = neurons[structure.inputIds[structure.inputStart[id] + i]];
+            this.inputs = inputs;
+        }
         return inputs;
     }
 
     public float[] getWeights() {
+        if (weights == null) {
+            NetworkStructure structure = network.getStructure();
+            weights = Arrays.copyOfRange(structure.weights, structure.inputStart[id], structure.inputStart[id + 1]);
+        }
         return weights;
     }
 
-    private float getLearningRate() {
-        return learningRate;
-    }
-
-    private Neuron setLearningRate(float lr) {
-        this.learningRate = lr;
-        return this;
-    }
-
     public Type getType() {
-        return type;
-    }
-
-    public void setType(Type type) {
-        this.type = type;
+        return network.getStructure().types[id];
     }
 
     @Override
@@ -132,7 +96,8 @@ public class Neuron implements Comparable<Neuron>, Serializable {
     @Override
     public String toString()
     {
-        StringBuilder s = new StringBuilder(String.format("id:%d, state:%.1f", id, state));
+        float[] weights = getWeights();
+        StringBuilder s = new StringBuilder(String.format("id:%d, state:%.1f", id, getState()));
         s.append(", connections: [");
         for (int i = 0; i < weights.length; i++)
             s.append(String.format("(%d, %.1f)", i, weights[i]));
@@ -140,20 +105,12 @@ public class Neuron implements Comparable<Neuron>, Serializable {
         return s.toString();
     }
 
-    public void setDepth(int depth) {
-        this.depth = depth;
-    }
-
     public int getDepth() {
-        return depth;
+        return network.getStructure().depths[id];
     }
 
     public boolean isConnectedToOutput() {
-        return connectedToOutput;
-    }
-
-    public void setConnectedToOutput(boolean connectedToOutput) {
-        this.connectedToOutput = connectedToOutput;
+        return network.isConnectedToOutput(id);
     }
 
     public void setGraphicsPosition(int x, int y) {
@@ -170,6 +127,6 @@ public class Neuron implements Comparable<Neuron>, Serializable {
     }
 
     public String getLabel() {
-        return label;
+        return network.getStructure().labels[id];
     }
 }
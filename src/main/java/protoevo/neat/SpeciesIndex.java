@@ -0,0 +1,117 @@
+package protoevo.neat;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups network genomes into species as they are born. Each species keeps the genome it was founded by as its
+ * representative, and a newborn joins the first species whose representative is within the compatibility
+ * distance threshold, trying its parent's species first. Newborns are therefore only compared against one
+ * genome per species, rather than against the whole population.
+ * <p>
+ * Genomes may be assigned concurrently. Species that have lost all their members are only removed by
+ * {@link #removeExtinct()}, which must not run at the same time as assignments.
+ */
+public class SpeciesIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_SPECIES = 0;
+
+    private static class Species implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int id;
+        private final NetworkGenome representative;
+        private final AtomicInteger members = new AtomicInteger();
+
+        Species(int id, NetworkGenome representative) {
+            this.id = id;
+            this.representative = representative;
+        }
+    }
+
+    private final float threshold;
+    private volatile Species[] species = new Species[0];
+    private final Map<Integer, Species> speciesById = new ConcurrentHashMap<>();
+    private int nextId = NO_SPECIES + 1;
+
+    public SpeciesIndex(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Adds a genome to the first compatible species, founding a new species if there is none.
+     * @param parentSpecies the species of the genome's parent, which is tried first, or {@link #NO_SPECIES}
+     * @return the id of the species the genome joined
+     */
+    public int assign(NetworkGenome genome, int parentSpecies) {
+        Species parent = speciesById.get(parentSpecies);
+        if (parent != null && join(parent, genome))
+            return parent.id;
+
+        Species[] known = species;
+        for (Species s : known)
+            if (s != parent && join(s, genome))
+                return s.id;
+
+        synchronized (this) {
+            // Check the species founded since the snapshot above before founding another
+            Species[] current = species;
+            for (int i = known.length; i < current.length; i++)
+                if (join(current[i], genome))
+                    return current[i].id;
+
+            Species founded = new Species(nextId++, genome);
+            founded.members.incrementAndGet();
+            Species[] updated = new Species[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = founded;
+            speciesById.put(founded.id, founded);
+            species = updated;
+            return founded.id;
+        }
+    }
+
+    private boolean join(Species s, NetworkGenome genome) {
+        if (genome.distance(s.representative) >= threshold)
+            return false;
+        s.members.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that a member of the species has died.
+     */
+    public void remove(int speciesId) {
+        Species s = speciesById.get(speciesId);
+        if (s != null)
+            s.members.decrementAndGet();
+    }
+
+    /**
+     * Forgets species that have no members left.
+     */
+    public synchronized void removeExtinct() {
+        List<Species> surviving = new ArrayList<>(species.length);
+        for (Species s : species) {
+            if (s.members.get() > 0)
+                surviving.add(s);
+            else
+                speciesById.remove(s.id);
+        }
+        if (surviving.size() < species.length)
+            species = surviving.toArray(new Species[0]);
+    }
+
+    public int numberOfSpecies() {
+        return species.length;
+    }
+
+    public int getSize(int speciesId) {
+        Species s = speciesById.get(speciesId);
+        return s == null ? 0 : s.members.get();
+    }
+}
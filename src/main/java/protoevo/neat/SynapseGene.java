@@ -8,22 +8,25 @@ import java.util.Objects;
 
 public class SynapseGene implements Comparable<SynapseGene>, Serializable
 {
-    private static int globalInnovation = 0;
     private final int innovation;
-    private NeuronGene in, out;
-    private float weight;
-    private boolean disabled;
+    private final NeuronGene in, out;
+    private final float weight;
+    private final boolean disabled;
 
-    public SynapseGene(NeuronGene in, NeuronGene out, float weight, int innovation) {
+    private SynapseGene(NeuronGene in, NeuronGene out, float weight, int innovation, boolean disabled) {
         this.in = in;
         this.out = out;
-        disabled = false;
+        this.disabled = disabled;
         this.weight = weight;
         this.innovation =  innovation;
     }
 
+    public SynapseGene(NeuronGene in, NeuronGene out, float weight, int innovation) {
+        this(in, out, weight, innovation, false);
+    }
+
     public SynapseGene(NeuronGene in, NeuronGene out, float weight) {
-        this(in, out, weight, globalInnovation++);
+        this(in, out, weight, InnovationRegistry.getGlobal().innovationFor(in.getId(), out.getId()));
     }
 
     public static float randomInitialWeight() {
@@ -31,7 +34,7 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     }
 
     public SynapseGene(NeuronGene in, NeuronGene out) {
-        this(in, out, randomInitialWeight(), globalInnovation++);
+        this(in, out, randomInitialWeight());
     }
 
     @Override
@@ -68,8 +71,13 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
         return disabled;
     }
 
-    public void setDisabled(boolean disabled) {
-        this.disabled = disabled;
+    /**
+     * @return this gene if it is already (dis)abled, otherwise a copy that is
+     */
+    public SynapseGene withDisabled(boolean disabled) {
+        if (disabled == this.disabled)
+            return this;
+        return new SynapseGene(in, out, weight, innovation, disabled);
     }
 
     public int getInnovation() {
@@ -80,23 +88,11 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
         return in;
     }
 
-    public void setIn(NeuronGene in) {
-        this.in = in;
-    }
-
     public NeuronGene getOut() {
         return out;
     }
 
-    public void setOut(NeuronGene out) {
-        this.out = out;
-    }
-
     public float getWeight() {
         return weight;
     }
-
-    public void setWeight(float weight) {
-        this.weight = weight;
-    }
 }
@@ -0,0 +1,142 @@
+package protoevo.neat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list of synapse genes sorted by innovation number, stored in small chunks. Adding or replacing
+ * a gene copies only the chunk it falls in and the array of chunk references, and shares every other chunk with
+ * the list it was made from, so a mutated copy of a genome costs little more than the genes that changed.
+ */
+public final class SynapseGeneList implements Iterable<SynapseGene>, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNK_SIZE = 32;
+
+    public static final SynapseGeneList EMPTY = new SynapseGeneList(new SynapseGene[0][], 0);
+
+    // Each chunk is non-empty and sorted, holds at most 2 * CHUNK_SIZE genes, and is never modified once shared
+    private final SynapseGene[][] chunks;
+    private final int size;
+
+    private SynapseGeneList(SynapseGene[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * @return a list of the first {@code n} genes in the array, which is sorted if it is not already
+     */
+    public static SynapseGeneList of(SynapseGene[] genes, int n) {
+        SynapseGene[] sorted = Arrays.copyOf(genes, n);
+        for (int i = 1; i < n; i++) {
+            if (sorted[i - 1].getInnovation() > sorted[i].getInnovation()) {
+                Arrays.sort(sorted);
+                break;
+            }
+        }
+
+        SynapseGene[][] chunks = new SynapseGene[(n + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int c = 0; c < chunks.length; c++)
+            chunks[c] = Arrays.copyOfRange(sorted, c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE));
+        return new SynapseGeneList(chunks, n);
+    }
+
+    public static SynapseGeneList of(SynapseGene[] genes) {
+        return of(genes, genes.length);
+    }
+
+    /**
+     * @return a list with the gene inserted in innovation order, or in place of the gene with the same innovation number
+     */
+    public SynapseGeneList with(SynapseGene gene) {
+        if (chunks.length == 0)
+            return new SynapseGeneList(new SynapseGene[][]{{gene}}, 1);
+
+        int c = chunkFor(gene.getInnovation());
+        SynapseGene[] chunk = chunks[c];
+        int i = Arrays.binarySearch(chunk, gene);
+        if (i >= 0) {
+            SynapseGene[] newChunk = chunk.clone();
+            newChunk[i] = gene;
+            SynapseGene[][] newChunks = chunks.clone();
+            newChunks[c] = newChunk;
+            return new SynapseGeneList(newChunks, size);
+        }
+
+        i = -i - 1;
+        SynapseGene[] newChunk = new SynapseGene[chunk.length + 1];
+        System.arraycopy(chunk, 0, newChunk, 0, i);
+        newChunk[i] = gene;
+        System.arraycopy(chunk, i, newChunk, i + 1, chunk.length - i);
+
+        SynapseGene[][] newChunks;
+        if (newChunk.length <= 2 * CHUNK_SIZE) {
+            newChunks = chunks.clone();
+            newChunks[c] = newChunk;
+        } else {
+            int half = newChunk.length / 2;
+            newChunks = new SynapseGene[chunks.length + 1][];
+            System.arraycopy(chunks, 0, newChunks, 0, c);
+            newChunks[c] = Arrays.copyOfRange(newChunk, 0, half);
+            newChunks[c + 1] = Arrays.copyOfRange(newChunk, half, newChunk.length);
+            System.arraycopy(chunks, c + 1, newChunks, c + 2, chunks.length - c - 1);
+        }
+        return new SynapseGeneList(newChunks, size + 1);
+    }
+
+    /**
+     * @return the index of the first chunk whose last gene is not before the innovation, or the last chunk
+     */
+    private int chunkFor(int innovation) {
+        int lo = 0, hi = chunks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            SynapseGene[] chunk = chunks[mid];
+            if (chunk[chunk.length - 1].getInnovation() < innovation)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public SynapseGene[] toArray() {
+        SynapseGene[] genes = new SynapseGene[size];
+        int i = 0;
+        for (SynapseGene[] chunk : chunks) {
+            System.arraycopy(chunk, 0, genes, i, chunk.length);
+            i += chunk.length;
+        }
+        return genes;
+    }
+
+    @Override
+    public Iterator<SynapseGene> iterator() {
+        return new Iterator<SynapseGene>() {
+            private int chunk = 0, index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < chunks.length;
+            }
+
+            @Override
+            public SynapseGene next() {
+                if (chunk >= chunks.length)
+                    throw new NoSuchElementException();
+                SynapseGene gene = chunks[chunk][index];
+                if (++index == chunks[chunk].length) {
+                    chunk++;
+                    index = 0;
+                }
+                return gene;
+            }
+        };
+    }
+}
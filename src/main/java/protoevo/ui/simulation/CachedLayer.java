@@ -0,0 +1,47 @@
+package protoevo.ui.simulation;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A transparent image holding drawing that stays the same from frame to frame, such as the rocks.
+ * The image is only redrawn when its key, describing the view it was drawn for, changes.
+ */
+public class CachedLayer {
+
+	private BufferedImage image;
+	private Graphics2D imageGraphics;
+	private float[] key;
+
+	/**
+	 * @param width width of the layer in pixels
+	 * @param height height of the layer in pixels
+	 * @param key values the contents of the layer depend on, such as zoom and pan
+	 * @param painter draws the layer, called only if the layer is out of date
+	 * @return the up-to-date layer
+	 */
+	public BufferedImage get(int width, int height, float[] key, Consumer<Graphics2D> painter) {
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			if (imageGraphics != null)
+				imageGraphics.dispose();
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			imageGraphics = image.createGraphics();
+			this.key = null;
+		}
+
+		if (!Arrays.equals(this.key, key)) {
+			imageGraphics.setComposite(AlphaComposite.Clear);
+			imageGraphics.fillRect(0, 0, width, height);
+			imageGraphics.setComposite(AlphaComposite.SrcOver);
+			painter.accept(imageGraphics);
+			this.key = key;
+		}
+		return image;
+	}
+
+	public void invalidate() {
+		key = null;
+	}
+}
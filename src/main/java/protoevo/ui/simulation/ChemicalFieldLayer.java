@@ -0,0 +1,69 @@
+package protoevo.ui.simulation;
+
+import protoevo.env.Chemical;
+import protoevo.env.ChemicalSolution;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Image of one chemical channel with one pixel per grid cell, written directly into the
+ * image's pixel array and then drawn scaled over the tank in a single call.
+ * The pixels are only rewritten when a frame carries densities from a different update of the chemical solution.
+ */
+public class ChemicalFieldLayer {
+
+	private static final float minVisibleDensity = 0.05f;
+
+	private final int[] colourRamp = new int[256];
+	private final Chemical chemical;
+	private BufferedImage image;
+	private int[] pixels;
+	private ChemicalSolution solution;
+	private long version = -1;
+
+	/**
+	 * @param chemical the channel to show
+	 * @param red red component of the chemical's colour
+	 * @param green green component of the chemical's colour
+	 * @param blue blue component of the chemical's colour
+	 */
+	public ChemicalFieldLayer(Chemical chemical, int red, int green, int blue) {
+		this.chemical = chemical;
+		int rgb = (red << 16) | (green << 8) | blue;
+		for (int level = 0; level < colourRamp.length; level++) {
+			float density = level / 255f;
+			int alpha = (int) (255 * density / 2f);
+			colourRamp[level] = density < minVisibleDensity ? 0 : (alpha << 24) | rgb;
+		}
+	}
+
+	/**
+	 * @param frame a frame with the chemical densities captured
+	 * @return an image of the chemical field, where pixel (i, j) is grid cell (i, j) of the solution
+	 */
+	public BufferedImage get(RenderFrame frame) {
+		ChemicalSolution solution = frame.getChemicalSolution();
+		int nX = solution.getNXChunks(), nY = solution.getNYChunks();
+		if (this.solution != solution || image == null) {
+			this.solution = solution;
+			image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_ARGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			version = -1;
+		}
+
+		long currentVersion = frame.getChemicalVersion();
+		if (currentVersion != version) {
+			version = currentVersion;
+			for (int j = 0; j < nY; j++) {
+				int row = j * nX;
+				for (int i = 0; i < nX; i++) {
+					float density = frame.getChemicalDensity(chemical, i, j);
+					int level = (int) (255 * Math.max(0f, Math.min(density, 1f)));
+					pixels[row + i] = colourRamp[level];
+				}
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,107 @@
+package protoevo.ui.simulation;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pre-rasterised outlined circles, so that cells can be drawn by copying an image rather than
+ * rasterising an oval every frame. Colours are quantised and radii rounded to whole pixels so that
+ * similar cells share a sprite, and the least recently used sprites are dropped once the cache is full.
+ */
+public class CircleSpriteCache {
+
+	private final int maxSprites;
+	private final float maxRadius;
+	private final Map<Long, BufferedImage> sprites;
+
+	/**
+	 * @param maxSprites number of sprites kept before the least recently used are dropped
+	 * @param maxRadius radius in pixels above which circles are not cached
+	 */
+	public CircleSpriteCache(int maxSprites, float maxRadius) {
+		this.maxSprites = maxSprites;
+		this.maxRadius = maxRadius;
+		this.sprites = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+				return size() > CircleSpriteCache.this.maxSprites;
+			}
+		};
+	}
+
+	public boolean canDraw(float r) {
+		return r <= maxRadius;
+	}
+
+	/**
+	 * Draws a filled circle centred on (x, y), as {@code fillOval} and {@code drawOval} would.
+	 * @param fill ARGB colour of the circle
+	 * @param outline ARGB colour of the outline, or 0 for no outline
+	 * @param antiAlias whether the outline is antialiased
+	 */
+	public void draw(Graphics2D g, float x, float y, float r, int fill, int outline, boolean antiAlias) {
+		int diameter = (int) (2 * r);
+		int strokeSize = outline == 0 ? 0 : (int) (0.1 * diameter);
+		int padding = strokeSize / 2 + 1;
+
+		long key = ((long) quantise(fill) << 28)
+				| ((long) quantise(outline) << 10)
+				| ((long) diameter << 1)
+				| (antiAlias ? 1 : 0);
+		BufferedImage sprite = sprites.get(key);
+		if (sprite == null) {
+			sprite = createSprite(diameter, padding, strokeSize, dequantise(quantise(fill)),
+					dequantise(quantise(outline)), antiAlias);
+			sprites.put(key, sprite);
+		}
+		g.drawImage(sprite, (int) (x - r) - padding, (int) (y - r) - padding, null);
+	}
+
+	private BufferedImage createSprite(int diameter, int padding, int strokeSize,
+									   int fill, int outline, boolean antiAlias) {
+		int size = diameter + 2 * padding + 1;
+		BufferedImage sprite = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = sprite.createGraphics();
+		g.setColor(new Color(fill, true));
+		g.fillOval(padding, padding, diameter, diameter);
+		if (outline != 0) {
+			if (antiAlias)
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setColor(new Color(outline, true));
+			g.setStroke(new BasicStroke(strokeSize));
+			g.drawOval(padding, padding, diameter, diameter);
+		}
+		g.dispose();
+		return sprite;
+	}
+
+	/**
+	 * @return the colour packed into 18 bits: 3 bits of alpha and 5 bits of each colour channel
+	 */
+	private static int quantise(int argb) {
+		return ((argb >>> 29) << 15)
+				| (((argb >> 19) & 0x1F) << 10)
+				| (((argb >> 11) & 0x1F) << 5)
+				| ((argb >> 3) & 0x1F);
+	}
+
+	private static int dequantise(int q) {
+		int a = q >>> 15, r = (q >> 10) & 0x1F, g = (q >> 5) & 0x1F, b = q & 0x1F;
+		if (a == 0)
+			return 0;
+		return (((a << 5) | (a << 2) | (a >> 1)) << 24)
+				| (((r << 3) | (r >> 2)) << 16)
+				| (((g << 3) | (g >> 2)) << 8)
+				| ((b << 3) | (b >> 2));
+	}
+
+	public int size() {
+		return sprites.size();
+	}
+
+	public void clear() {
+		sprites.clear();
+	}
+}
@@ -0,0 +1,147 @@
+package protoevo.ui.simulation;
+
+import protoevo.core.Simulation;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the simulation offscreen every few updates and writes the frames as numbered PNGs
+ * to {@code saves/<name>/frames/}, for making time-lapse videos of runs without a window.
+ * The simulation thread only captures the frame; drawing happens on a separate thread and
+ * encoding on a small pool of threads. If either falls behind, frames are dropped rather
+ * than holding up the simulation.
+ */
+public class FrameExporter {
+
+	private final Simulation simulation;
+	private final SimulationRenderer renderer;
+	private final int width, height, interval;
+	private final Path directory;
+	private final ExecutorService renderThread;
+	private final ThreadPoolExecutor encoders;
+	private final AtomicBoolean rendering = new AtomicBoolean(false);
+	private final AtomicInteger framesWritten = new AtomicInteger(), framesDropped = new AtomicInteger();
+	private final AtomicLong ticks = new AtomicLong();
+	// Only used on the render thread
+	private int nextFrameNumber = 0;
+
+	/**
+	 * @param interval number of simulation updates between exported frames
+	 * @param encoderThreads number of threads encoding and writing PNGs
+	 * @param maxQueuedFrames number of rendered frames that may wait to be encoded before frames are dropped
+	 */
+	public FrameExporter(Simulation simulation, int width, int height,
+						 int interval, int encoderThreads, int maxQueuedFrames) {
+		this.simulation = simulation;
+		this.width = width;
+		this.height = height;
+		this.interval = Math.max(1, interval);
+		this.renderer = new SimulationRenderer(simulation, width, height);
+
+		directory = Paths.get("saves/" + simulation.getName() + "/frames");
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		renderThread = Executors.newSingleThreadExecutor(daemonThreads("frame-render"));
+		int threads = Math.max(1, encoderThreads);
+		encoders = new ThreadPoolExecutor(
+				threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, maxQueuedFrames)),
+				daemonThreads("frame-encoder"));
+
+		simulation.addUpdateListener(this::onUpdate);
+		System.out.println("Exporting a frame every " + this.interval + " updates to " + directory);
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Called on the simulation thread after each update, while it holds the tank lock.
+	 */
+	private void onUpdate() {
+		if (simulation.isPaused() || ticks.incrementAndGet() % interval != 0)
+			return;
+		if (!rendering.compareAndSet(false, true)) {
+			framesDropped.incrementAndGet();
+			return;
+		}
+		renderer.captureFrame();
+		renderThread.execute(this::render);
+	}
+
+	/**
+	 * Draws the captured frame and hands it to the encoders. Frames are only numbered once an encoder has
+	 * accepted them, so that dropped frames leave no gaps in the numbering for video encoders to stop at.
+	 */
+	private void render() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		try {
+			renderer.paint(image.createGraphics());
+		} catch (RuntimeException e) {
+			System.out.println("Failed to render frame " + nextFrameNumber + ": " + e.getMessage());
+			return;
+		} finally {
+			rendering.set(false);
+		}
+		int frameNumber = nextFrameNumber;
+		try {
+			encoders.execute(() -> write(image, frameNumber));
+			nextFrameNumber++;
+		} catch (RejectedExecutionException e) {
+			framesDropped.incrementAndGet();
+		}
+	}
+
+	private void write(BufferedImage image, int frameNumber) {
+		File file = directory.resolve(String.format("frame-%06d.png", frameNumber)).toFile();
+		try {
+			ImageIO.write(image, "png", file);
+			framesWritten.incrementAndGet();
+		} catch (IOException e) {
+			System.out.println("Failed to write frame " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Waits for frames that have already been rendered to be written, then stops the export threads.
+	 */
+	public void close() {
+		renderThread.shutdown();
+		try {
+			renderThread.awaitTermination(10, TimeUnit.SECONDS);
+			encoders.shutdown();
+			encoders.awaitTermination(60, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		System.out.println("Exported " + framesWritten.get() + " frames, dropped " + framesDropped.get());
+	}
+
+	public int getFramesWritten() {
+		return framesWritten.get();
+	}
+
+	public int getFramesDropped() {
+		return framesDropped.get();
+	}
+}
@@ -0,0 +1,431 @@
+package protoevo.ui.simulation;
+
+import protoevo.biology.*;
+import protoevo.core.Chunk;
+import protoevo.core.ChunkManager;
+import protoevo.core.Settings;
+import protoevo.env.Chemical;
+import protoevo.env.ChemicalSolution;
+import protoevo.env.Tank;
+import protoevo.neat.NeuralNetwork;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of everything the renderer needs to draw one frame of the tank, captured by the
+ * simulation thread while it holds the tank lock. Cells are stored as parallel arrays and
+ * colours as packed ARGB ints. Frames are reused, so the arrays only grow and
+ * {@link #getCellCount()} gives the number of valid entries. The tracked protozoan's network and the
+ * chemical densities are copied too, so nothing the simulation goes on to change is read while drawing.
+ */
+public class RenderFrame {
+
+	public static final byte KIND_PELLET = 0, KIND_PROTOZOAN = 1;
+	public static final byte FLAG_DAMAGED = 1, FLAG_CROSSOVER = 2, FLAG_RETINA = 4;
+	/** Retina colour for a retina cell that cannot see anything. */
+	public static final int NOTHING_VISIBLE = 0;
+
+	private int cellCount, chunksCaptured;
+	private float[] x = new float[0], y = new float[0], radius = new float[0];
+	private float[] dirAngle = new float[0], velAngle = new float[0];
+	private int[] colour = new int[0], mateColour = new int[0], nucleusSeed = new int[0];
+	private byte[] kind = new byte[0], flags = new byte[0];
+
+	private int[] retinaStart = new int[0], retinaCount = new int[0];
+	private float[] retinaFov = new float[0], retinaCellAngle = new float[0], retinaHealth = new float[0];
+	private int retinaCellCount;
+	private int[] retinaColours = new int[0];
+
+	private int[] spikeStart = new int[0], spikeCount = new int[0];
+	private int spikeTotal;
+	private float[] spikeAngle = new float[0], spikeLength = new float[0];
+
+	private int attachmentCount;
+	private float[] attachment = new float[0];
+	private int[] attachmentColour = new int[0];
+
+	private boolean tankInitialised;
+	private Map<String, Float> tankStats = Collections.emptyMap();
+	private int numberOfPellets, numberOfProtozoa;
+
+	private Cell trackRequested, tracked;
+	private float trackedX, trackedY;
+	private String trackedName;
+	private Map<String, Float> trackedStats = Collections.emptyMap();
+	private NeuralNetwork trackedNetwork, trackedNetworkCopy;
+
+	private ChemicalSolution chemicalSolution;
+	private float[] chemicalDensities;
+	private long chemicalVersion = -1;
+
+	private void ensureCellCapacity(int n) {
+		if (x.length >= n)
+			return;
+		int size = Math.max(n, x.length + x.length / 2);
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		radius = Arrays.copyOf(radius, size);
+		dirAngle = Arrays.copyOf(dirAngle, size);
+		velAngle = Arrays.copyOf(velAngle, size);
+		colour = Arrays.copyOf(colour, size);
+		mateColour = Arrays.copyOf(mateColour, size);
+		nucleusSeed = Arrays.copyOf(nucleusSeed, size);
+		kind = Arrays.copyOf(kind, size);
+		flags = Arrays.copyOf(flags, size);
+		retinaStart = Arrays.copyOf(retinaStart, size);
+		retinaCount = Arrays.copyOf(retinaCount, size);
+		retinaFov = Arrays.copyOf(retinaFov, size);
+		retinaCellAngle = Arrays.copyOf(retinaCellAngle, size);
+		retinaHealth = Arrays.copyOf(retinaHealth, size);
+		spikeStart = Arrays.copyOf(spikeStart, size);
+		spikeCount = Arrays.copyOf(spikeCount, size);
+	}
+
+	private static int grow(int length, int required) {
+		return Math.max(required, length + length / 2);
+	}
+
+	/**
+	 * Overwrites this frame with the current state of the tank. Must be called while holding the tank lock.
+	 * @param tank the tank to capture
+	 * @param trackRequest the cell the renderer is currently tracking, or null
+	 * @param view the region of the tank to capture cells from, as {xMin, yMin, xMax, yMax}
+	 *             in tank coordinates, or null to capture every cell
+	 */
+	public void capture(Tank tank, Cell trackRequest, float[] view) {
+		tankInitialised = tank.hasBeenInitialised();
+		tankStats = tank.getStats();
+		numberOfPellets = tank.numberOfPellets();
+		numberOfProtozoa = tank.numberOfProtozoa();
+		captureTracked(trackRequest);
+		if (Settings.enableChemicalField)
+			captureChemicals(tank.getChemicalSolution());
+
+		ChunkManager chunkManager = tank.getChunkManager();
+		List<Cell> cells = chunkManager.getAllCells();
+		ensureCellCapacity(cells.size());
+		cellCount = 0;
+		chunksCaptured = 0;
+		retinaCellCount = 0;
+		spikeTotal = 0;
+		attachmentCount = 0;
+
+		if (view == null) {
+			for (Cell cell : cells)
+				captureAnyCell(cell);
+			return;
+		}
+
+		int iMin = chunkManager.toChunkX(view[0]), iMax = chunkManager.toChunkX(view[2]);
+		int jMin = chunkManager.toChunkY(view[1]), jMax = chunkManager.toChunkY(view[3]);
+		for (int i = iMin; i <= iMax; i++) {
+			for (int j = jMin; j <= jMax; j++) {
+				Chunk chunk = chunkManager.getChunk(chunkManager.toChunkID(i, j));
+				chunksCaptured++;
+				for (Cell cell : chunk.getCells())
+					captureAnyCell(cell);
+			}
+		}
+	}
+
+	private void captureAnyCell(Cell cell) {
+		if (cell instanceof Protozoan)
+			captureProtozoan((Protozoan) cell);
+		else if (cell instanceof EdibleCell)
+			captureCell(cell, KIND_PELLET);
+		else
+			return;
+		captureAttachments(cell);
+	}
+
+	private void captureTracked(Cell trackRequest) {
+		trackRequested = trackRequest;
+		tracked = trackRequest;
+		if (tracked != null && tracked.isDead() && !tracked.getChildren().isEmpty())
+			tracked = tracked.getChildren().iterator().next();
+
+		trackedNetwork = null;
+		if (tracked == null) {
+			trackedStats = Collections.emptyMap();
+			trackedName = null;
+			return;
+		}
+		trackedX = tracked.getPos().getX();
+		trackedY = tracked.getPos().getY();
+		trackedName = tracked.getPrettyName();
+		trackedStats = tracked.getStats();
+		if (tracked instanceof Protozoan && ((Protozoan) tracked).getBrain() instanceof NNBrain) {
+			trackedNetworkCopy = ((NNBrain) ((Protozoan) tracked).getBrain()).network.copyState(trackedNetworkCopy);
+			trackedNetwork = trackedNetworkCopy;
+		}
+	}
+
+	private void captureChemicals(ChemicalSolution solution) {
+		if (solution == chemicalSolution && solution.getVersion() == chemicalVersion)
+			return;
+		chemicalSolution = solution;
+		chemicalVersion = solution.getVersion();
+		chemicalDensities = solution.copyDensities(chemicalDensities);
+	}
+
+	private int captureCell(Cell cell, byte cellKind) {
+		ensureCellCapacity(cellCount + 1);
+		int i = cellCount++;
+		x[i] = cell.getPos().getX();
+		y[i] = cell.getPos().getY();
+		radius[i] = cell.getRadius();
+		colour[i] = cell.getColor();
+		kind[i] = cellKind;
+		flags[i] = 0;
+		retinaCount[i] = 0;
+		spikeCount[i] = 0;
+		return i;
+	}
+
+	private void captureProtozoan(Protozoan p) {
+		int i = captureCell(p, KIND_PROTOZOAN);
+		dirAngle[i] = p.getDir().angle();
+		velAngle[i] = p.getVel().angle();
+		if (p.wasJustDamaged)
+			flags[i] |= FLAG_DAMAGED;
+
+		Protozoan mate = p.getMate();
+		if (p.isHarbouringCrossover() && mate != null) {
+			flags[i] |= FLAG_CROSSOVER;
+			mateColour[i] = mate.getColor();
+			nucleusSeed[i] = p.id + mate.id;
+		}
+
+		Protozoan.Spike[] spikes = p.getSpikes();
+		spikeStart[i] = spikeTotal;
+		spikeCount[i] = spikes.length;
+		if (spikeAngle.length < spikeTotal + spikes.length) {
+			int size = grow(spikeAngle.length, spikeTotal + spikes.length);
+			spikeAngle = Arrays.copyOf(spikeAngle, size);
+			spikeLength = Arrays.copyOf(spikeLength, size);
+		}
+		for (Protozoan.Spike spike : spikes) {
+			spikeAngle[spikeTotal] = spike.angle;
+			spikeLength[spikeTotal] = p.getSpikeLength(spike);
+			spikeTotal++;
+		}
+
+		Retina retina = p.getRetina();
+		int nRetinaCells = retina.numberOfCells();
+		if (nRetinaCells == 0)
+			return;
+		flags[i] |= FLAG_RETINA;
+		retinaFov[i] = retina.getFov();
+		retinaCellAngle[i] = retina.getCellAngle();
+		retinaHealth[i] = retina.getHealth();
+		retinaStart[i] = retinaCellCount;
+		retinaCount[i] = nRetinaCells;
+		if (retinaColours.length < retinaCellCount + nRetinaCells)
+			retinaColours = Arrays.copyOf(retinaColours, grow(retinaColours.length, retinaCellCount + nRetinaCells));
+		for (Retina.Cell cell : retina)
+			retinaColours[retinaCellCount++] = cell.anythingVisible() ? cell.getColour() : NOTHING_VISIBLE;
+	}
+
+	private void captureAttachments(Cell cell) {
+		Iterator<CellAdhesion.CellBinding> bindings = cell.getCellBindings().iterator();
+		if (!bindings.hasNext())
+			return;
+		int c1 = cell.getColor();
+		while (bindings.hasNext()) {
+			Cell attached = bindings.next().getDestinationEntity();
+			if (attachment.length < 5 * (attachmentCount + 1)) {
+				attachment = Arrays.copyOf(attachment, grow(attachment.length, 5 * (attachmentCount + 1)));
+				attachmentColour = Arrays.copyOf(attachmentColour, attachment.length / 5);
+			}
+			int k = 5 * attachmentCount;
+			attachment[k] = cell.getPos().getX();
+			attachment[k + 1] = cell.getPos().getY();
+			attachment[k + 2] = attached.getPos().getX();
+			attachment[k + 3] = attached.getPos().getY();
+			attachment[k + 4] = Math.min(cell.getRadius(), attached.getRadius());
+			int c2 = attached.getColor();
+			int red = (((c1 >> 16) & 0xFF) + ((c2 >> 16) & 0xFF)) / 2;
+			int green = (((c1 >> 8) & 0xFF) + ((c2 >> 8) & 0xFF)) / 2;
+			int blue = ((c1 & 0xFF) + (c2 & 0xFF)) / 2;
+			attachmentColour[attachmentCount] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+			attachmentCount++;
+		}
+	}
+
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * @return the number of chunks whose cells were captured, or 0 if every cell was captured
+	 */
+	public int getChunksCaptured() {
+		return chunksCaptured;
+	}
+
+	public float getX(int i) {
+		return x[i];
+	}
+
+	public float getY(int i) {
+		return y[i];
+	}
+
+	public float getRadius(int i) {
+		return radius[i];
+	}
+
+	public int getColour(int i) {
+		return colour[i];
+	}
+
+	public byte getKind(int i) {
+		return kind[i];
+	}
+
+	public boolean hasFlag(int i, byte flag) {
+		return (flags[i] & flag) != 0;
+	}
+
+	public float getDirAngle(int i) {
+		return dirAngle[i];
+	}
+
+	public float getVelAngle(int i) {
+		return velAngle[i];
+	}
+
+	public int getMateColour(int i) {
+		return mateColour[i];
+	}
+
+	public int getNucleusSeed(int i) {
+		return nucleusSeed[i];
+	}
+
+	public int getSpikeCount(int i) {
+		return spikeCount[i];
+	}
+
+	public float getSpikeAngle(int i, int spike) {
+		return spikeAngle[spikeStart[i] + spike];
+	}
+
+	public float getSpikeLength(int i, int spike) {
+		return spikeLength[spikeStart[i] + spike];
+	}
+
+	public int getRetinaCount(int i) {
+		return retinaCount[i];
+	}
+
+	public float getRetinaFov(int i) {
+		return retinaFov[i];
+	}
+
+	public float getRetinaCellAngle(int i) {
+		return retinaCellAngle[i];
+	}
+
+	public float getRetinaHealth(int i) {
+		return retinaHealth[i];
+	}
+
+	/**
+	 * @return the packed colour seen by a retina cell, or {@link #NOTHING_VISIBLE}
+	 */
+	public int getRetinaColour(int i, int retinaCell) {
+		return retinaColours[retinaStart[i] + retinaCell];
+	}
+
+	public int getAttachmentCount() {
+		return attachmentCount;
+	}
+
+	/**
+	 * @return the start x, start y, end x, end y and width of an attachment, in tank coordinates
+	 */
+	public float getAttachment(int attachmentIdx, int component) {
+		return attachment[5 * attachmentIdx + component];
+	}
+
+	public int getAttachmentColour(int attachmentIdx) {
+		return attachmentColour[attachmentIdx];
+	}
+
+	public boolean isTankInitialised() {
+		return tankInitialised;
+	}
+
+	public Map<String, Float> getTankStats() {
+		return tankStats;
+	}
+
+	public int getNumberOfPellets() {
+		return numberOfPellets;
+	}
+
+	public int getNumberOfProtozoa() {
+		return numberOfProtozoa;
+	}
+
+	/**
+	 * @return the cell that was being tracked when this frame was requested
+	 */
+	public Cell getTrackRequested() {
+		return trackRequested;
+	}
+
+	/**
+	 * @return the cell captured as tracked, which is a child of the requested cell if that cell has died
+	 */
+	public Cell getTracked() {
+		return tracked;
+	}
+
+	public float getTrackedX() {
+		return trackedX;
+	}
+
+	public float getTrackedY() {
+		return trackedY;
+	}
+
+	public String getTrackedName() {
+		return trackedName;
+	}
+
+	public Map<String, Float> getTrackedStats() {
+		return trackedStats;
+	}
+
+	/**
+	 * @return a copy of the tracked protozoan's network, or null if it has none
+	 */
+	public NeuralNetwork getTrackedNetwork() {
+		return trackedNetwork;
+	}
+
+	/**
+	 * @return the chemical solution the densities were copied from, which is only to be used for its grid layout,
+	 * or null if the chemical field is disabled
+	 */
+	public ChemicalSolution getChemicalSolution() {
+		return chemicalSolution;
+	}
+
+	/**
+	 * @return a counter that changes every time the captured densities change
+	 */
+	public long getChemicalVersion() {
+		return chemicalVersion;
+	}
+
+	public float getChemicalDensity(Chemical chemical, int i, int j) {
+		return chemicalSolution.getDensity(chemicalDensities, chemical, i, j);
+	}
+}
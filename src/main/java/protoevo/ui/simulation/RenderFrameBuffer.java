@@ -0,0 +1,46 @@
+package protoevo.ui.simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of {@link RenderFrame}s between the simulation thread, which writes
+ * frames, and the render thread, which draws them. Each side owns one frame outright and the
+ * third is exchanged through a single atomic, so neither side ever waits for the other.
+ */
+public class RenderFrameBuffer {
+
+	private static final int INDEX_MASK = 3, FRESH = 4;
+
+	private final RenderFrame[] frames = {new RenderFrame(), new RenderFrame(), new RenderFrame()};
+	/** Index of the frame waiting to be exchanged, plus the {@link #FRESH} bit if it has not yet been read. */
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0, front = 2;
+
+	/**
+	 * @return whether the last published frame has been picked up by the renderer,
+	 * so that capturing a new one would not be wasted
+	 */
+	public boolean wantsFrame() {
+		return (middle.get() & FRESH) == 0;
+	}
+
+	/**
+	 * @return the frame owned by the writer, to be filled before calling {@link #publish()}
+	 */
+	public RenderFrame getBackFrame() {
+		return frames[back];
+	}
+
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * @return the most recently published frame, which stays valid until the next call
+	 */
+	public RenderFrame getLatestFrame() {
+		if ((middle.get() & FRESH) != 0)
+			front = middle.getAndSet(front) & INDEX_MASK;
+		return frames[front];
+	}
+}
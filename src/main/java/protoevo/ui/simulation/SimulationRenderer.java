@@ -1,10 +1,13 @@
 package protoevo.ui.simulation;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.function.Consumer;
 
 import protoevo.biology.*;
 import protoevo.core.*;
+import protoevo.env.Chemical;
 import protoevo.env.ChemicalSolution;
 import protoevo.env.Rock;
 import protoevo.env.Tank;
@@ -28,55 +31,90 @@ public class SimulationRenderer extends Canvas {
 	private final float rotate = 0;
 	private double lastFPSTime = 0;
 	private int framesRendered = 0;
-	private Cell track;
+	private volatile Cell track;
+	private Vector2 trackCentre;
+	private final RenderFrameBuffer frameBuffer = new RenderFrameBuffer();
+	private volatile float[] captureView;
+	private final ChemicalFieldLayer plantPheromoneLayer =
+			new ChemicalFieldLayer(Chemical.PLANT_PHEROMONE, 80, 200, 60);
+	private final CircleSpriteCache circleSprites =
+			new CircleSpriteCache(Settings.circleSpriteCacheSize, Settings.maxCircleSpriteRadius);
+	private final CachedLayer staticForegroundLayer = new CachedLayer(), chunkGridLayer = new CachedLayer();
+	/** Fraction of the window the static layers extend past each edge, so the view can move before they are redrawn. */
+	private final float staticLayerMargin = 0.25f;
+	private Vector2 staticLayerOrigin;
+	private float staticLayerZoom;
+	private final int microscopePolygonNPoints = 500;
+	private int microscopePolygonXPoints[] = new int[microscopePolygonNPoints];
+	private int microscopePolygonYPoints[] = new int[microscopePolygonNPoints];
 	private final SimulationUI ui;
 	private boolean showUI = true;
+	private final boolean offscreen;
+	private final int width, height;
 	public boolean antiAliasing = Settings.antiAliasing;
 
 	private final HashMap<String, Integer> stats = new HashMap<>(5, 1);
 	private final Simulation simulation;
-	private final protoevo.ui.Window window;
 
 	public SimulationRenderer(Simulation simulation, Window window)
+	{
+		this(simulation, window, window.getWidth(), window.getHeight());
+	}
+
+	/**
+	 * Creates a renderer that is not attached to a window, for drawing frames into images.
+	 * No UI is drawn, and frames are only captured when {@link #captureFrame()} is called.
+	 */
+	public SimulationRenderer(Simulation simulation, int width, int height)
+	{
+		this(simulation, null, width, height);
+	}
+
+	private SimulationRenderer(Simulation simulation, Window window, int width, int height)
 	{
 		this.simulation = simulation;
-		this.window = window;
-		window.getInput().onLeftMouseRelease = this::updatePanTemp;
+		this.width = width;
+		this.height = height;
+		offscreen = window == null;
 
 		stats.put("FPS", 0);
-		stats.put("Chunks Rendered", 0);
 		stats.put("Protozoa Rendered", 0);
 		stats.put("Pellets Rendered", 0);
+		stats.put("Dots Rendered", 0);
+		stats.put("Chunks Rendered", 0);
 		stats.put("Broad Collision", 0);
 		stats.put("Broad Interact", 0);
 		stats.put("Zoom", 0);
 		
-		tankRenderRadius = window.getHeight() / 2.0f;
-		tankRenderCoords = new Vector2(window.getWidth()*0.5f, window.getHeight()*0.5f);
+		tankRenderRadius = height / 2.0f;
+		tankRenderCoords = new Vector2(width*0.5f, height*0.5f);
 		pan = new Vector2(0, 0);
 		panPosTemp = pan;
 
 		zoom = 1f;
 		targetZoom = zoom;
 		zoomRange *= simulation.getTank().getRadius();
+		lastFPSTime = Utils.getTimeSeconds();
 
+		if (offscreen) {
+			ui = null;
+			showUI = false;
+			return;
+		}
+
+		window.getInput().onLeftMouseRelease = this::updatePanTemp;
 		ui = new SimulationUI(window, simulation, this);
+		simulation.addUpdateListener(this::captureFrame);
 		
 		requestFocus();
 		setFocusable(true);
-		lastFPSTime = Utils.getTimeSeconds();
 	}
 	
-	public void retina(Graphics2D g, Protozoan p)
+	public void retina(Graphics2D g, RenderFrame frame, int i, Vector2 pos, float r, Color c)
 	{
-		Vector2 pos = toRenderSpace(p.getPos());
-		float r = toRenderSpace(p.getRadius());
-		
-		Color c = p.getColor();
-
-		float dt 	= p.getRetina().getCellAngle();
-		float fov 	= p.getRetina().getFov();
-		float t0 	= -p.getDir().angle() - 0.5f*fov - rotate;
+		float dt 	= frame.getRetinaCellAngle(i);
+		float fov 	= frame.getRetinaFov(i);
+		float t0 	= -frame.getDirAngle(i) - 0.5f*fov - rotate;
 		float t 	= t0;
 		
 		g.setColor(c.darker());
@@ -89,11 +127,11 @@ public class SimulationRenderer extends Canvas {
 				(int) Math.toDegrees(fov + 5.6*dt));
 
 		if (stats.get("FPS") >= 0) {
-			float constructionProgress = p.getRetina().getHealth();
-			for (Retina.Cell cell : p.getRetina()) {
-				if (cell.anythingVisible()) {
-					Color col = cell.getColour();
-					g.setColor(col);
+			float constructionProgress = frame.getRetinaHealth(i);
+			for (int cell = 0; cell < frame.getRetinaCount(i); cell++) {
+				int colour = frame.getRetinaColour(i, cell);
+				if (colour != RenderFrame.NOTHING_VISIBLE) {
+					g.setColor(new Color(colour, true));
 				} else {
 					if (constructionProgress < 1)
 						g.setColor(new Color(255, 255, 255, (int) (255 * constructionProgress)));
@@ -126,44 +164,44 @@ public class SimulationRenderer extends Canvas {
 				(int)(pos.getY() - 0.75*r), 
 				(int)(2*0.75*r), 
 				(int)(2*0.75*r));
+	}
 
-		if (p == track && simulation.inDebugMode()) {
-			g.setColor(Color.YELLOW.darker());
-			float dirAngle = p.getDir().angle();
-			for (Retina.Cell cell : p.getRetina().getCells()) {
-				for (Vector2 ray : cell.getRays()) {
-					Vector2 rayRotated = ray.rotate(dirAngle);
-					Vector2 rayDir = rayRotated.unit().scale(toRenderSpace(Settings.protozoaInteractRange));
-					Vector2 rayStart = pos.add(rayRotated.unit().scale(r));
-					Vector2 rayEnd = pos.add(rayDir);
-					g.drawLine(
-							(int) rayStart.getX(), (int) rayStart.getY(),
-							(int) rayEnd.getX(), (int) rayEnd.getY());
-				}
+	public void retinaRays(Graphics2D g, Protozoan p) {
+		Vector2 pos = toRenderSpace(p.getPos());
+		float r = toRenderSpace(p.getRadius());
+		g.setColor(Color.YELLOW.darker());
+		float dirAngle = p.getDir().angle();
+		for (Retina.Cell cell : p.getRetina().getCells()) {
+			for (Vector2 ray : cell.getRays()) {
+				Vector2 rayRotated = ray.rotate(dirAngle);
+				Vector2 rayDir = rayRotated.unit().scale(toRenderSpace(Settings.protozoaInteractRange));
+				Vector2 rayStart = pos.add(rayRotated.unit().scale(r));
+				Vector2 rayEnd = pos.add(rayDir);
+				g.drawLine(
+						(int) rayStart.getX(), (int) rayStart.getY(),
+						(int) rayEnd.getX(), (int) rayEnd.getY());
 			}
 		}
 	}
 	
-	public void protozoa(Graphics2D g, Protozoan p)
+	public void protozoa(Graphics2D g, RenderFrame frame, int i, Vector2 pos, float r)
 	{
-		Vector2 pos = toRenderSpace(p.getPos());
-		float r = toRenderSpace(p.getRadius());
-
-		if (circleNotVisible(pos, r))
-			return;
-		if (!p.wasJustDamaged) {
-			drawOutlinedCircle(g, pos, r, p.getColor());
+		Color colour = new Color(frame.getColour(i), true);
+		if (!frame.hasFlag(i, RenderFrame.FLAG_DAMAGED)) {
+			drawOutlinedCircle(g, pos, r, colour);
 		} else {
-			drawOutlinedCircle(g, pos, r, p.getColor(), Color.RED);
+			drawOutlinedCircle(g, pos, r, colour, Color.RED);
 		}
 
-		for (Protozoan.Spike spike : p.getSpikes()) {
-			if (r > 0.001 * window.getHeight()) {
+		float dirAngle = frame.getDirAngle(i);
+		Vector2 dir = new Vector2((float) Math.cos(dirAngle), (float) Math.sin(dirAngle));
+		for (int spike = 0; spike < frame.getSpikeCount(i); spike++) {
+			if (r > 0.001 * height) {
 				Stroke s = g.getStroke();
-				g.setColor(p.getColor().darker().darker());
+				g.setColor(colour.darker().darker());
 				g.setStroke(new BasicStroke((int) (r * 0.2)));
-				Vector2 spikeStartPos = p.getDir().unit().rotate(spike.angle).setLength(r).translate(pos);
-				float spikeLen = toRenderSpace(p.getSpikeLength(spike));
+				Vector2 spikeStartPos = dir.rotate(frame.getSpikeAngle(i, spike)).setLength(r).translate(pos);
+				float spikeLen = toRenderSpace(frame.getSpikeLength(i, spike));
 				Vector2 spikeEndPos = spikeStartPos.add(spikeStartPos.sub(pos).setLength(spikeLen));
 				g.drawLine((int) (spikeStartPos.getX()), (int) (spikeStartPos.getY()),
 						(int) (spikeEndPos.getX()), (int) (spikeEndPos.getY()));
@@ -173,35 +211,35 @@ public class SimulationRenderer extends Canvas {
 
 		stats.put("Protozoa Rendered", stats.get("Protozoa Rendered") + 1);
 
-		if (r >= 0.005 * window.getHeight() && p.getRetina().numberOfCells() > 0)
-			retina(g, p);
+		if (r >= 0.005 * height && frame.hasFlag(i, RenderFrame.FLAG_RETINA))
+			retina(g, frame, i, pos, r, colour);
 
-		if (stats.get("FPS") > 10 && r >= 10) {
-			if (p.isHarbouringCrossover()) {
+		if (!superSimpleRender && r >= 10) {
+			if (frame.hasFlag(i, RenderFrame.FLAG_CROSSOVER)) {
 				Polygon nucleus = new Polygon();
 				float dt = (float) (2 * Math.PI / (7.0));
-				float t0 = p.getVel().angle();
-				Random random = new Random(p.id + p.getMate().id);
+				float t0 = frame.getVelAngle(i);
+				Random random = new Random(frame.getNucleusSeed(i));
 				for (float t = 0; t < 2 * Math.PI; t += dt) {
 					float percent = 0.1f + 0.2f * random.nextFloat();
-					float radius = toRenderSpace(percent * p.getRadius());
+					float radius = toRenderSpace(percent * frame.getRadius(i));
 					int x = (int) (radius * (0.1 + Math.cos(t + t0)) + pos.getX());
 					int y = (int) (radius * (-0.1 + Math.sin(t + t0)) + pos.getY());
 					nucleus.addPoint(x, y);
 				}
-				Color b = p.getMate().getColor().brighter();
+				Color b = new Color(frame.getMateColour(i)).brighter();
 				g.setColor(new Color(b.getRed(), b.getGreen(), b.getBlue(), 50));
 				g.fillPolygon(nucleus);
 			}
-			Color b = p.getColor().brighter();
+			Color b = colour.brighter();
 			fillCircle(g, pos, 3 * r / 7f, new Color(b.getRed(), b.getGreen(), b.getBlue(), 50));
 		}
 	}
 
 	public boolean circleNotVisible(Vector2 pos, float r) {
-		return (pos.getX() - r > window.getWidth())
+		return (pos.getX() - r > width)
 			 ||(pos.getX() + r < 0)
-			 ||(pos.getY() - r > window.getHeight())
+			 ||(pos.getY() - r > height)
 			 ||(pos.getY() + r < 0);
 	}
 
@@ -235,6 +273,13 @@ public class SimulationRenderer extends Canvas {
 	}
 
 	public void drawOutlinedCircle(Graphics2D g, Vector2 pos, float r, Color c, Color outline) {
+		if (r > 3 && circleSprites.canDraw(r)) {
+			boolean outlined = r >= 10 && !superSimpleRender;
+			circleSprites.draw(g, pos.getX(), pos.getY(), r, c.getRGB(),
+					outlined ? outline.getRGB() : 0, antiAliasing);
+			return;
+		}
+
 		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 		g.setColor(c);
 
@@ -276,25 +321,33 @@ public class SimulationRenderer extends Canvas {
 		drawOutlinedCircle(g, pos, r, c, edgeColour);
 	}
 	
-	public void pellet(Graphics2D g, EdibleCell p)
+	public void pellet(Graphics2D g, RenderFrame frame, int i, Vector2 pos, float r)
 	{
-		Vector2 pos = toRenderSpace(p.getPos());
-		float r = toRenderSpace(p.getRadius());
-		drawOutlinedCircle(g, pos, r, p.getColor());
+		drawOutlinedCircle(g, pos, r, new Color(frame.getColour(i), true));
 		if (simulation.inDebugMode())
 			stats.put("Pellets Rendered", stats.get("Pellets Rendered") + 1);
 	}
 
-	public void renderEntity(Graphics2D g, Cell e) {
-		if (e instanceof Protozoan)
-			protozoa(g, (Protozoan) e);
-		else if (e instanceof EdibleCell)
-			pellet(g, (EdibleCell) e);
+	public void renderEntity(Graphics2D g, RenderFrame frame, int i) {
+		Vector2 pos = toRenderSpace(frame.getX(i), frame.getY(i));
+		float r = zoom * tankRenderRadius * frame.getRadius(i) / simulation.getTank().getRadius();
+		if (circleNotVisible(pos, r))
+			return;
+
+		if (r < 1) {
+			stats.put("Dots Rendered", stats.get("Dots Rendered") + 1);
+			g.setColor(new Color(frame.getColour(i), true));
+			g.fillRect((int) pos.getX(), (int) pos.getY(), 1, 1);
+		}
+		else if (frame.getKind(i) == RenderFrame.KIND_PROTOZOAN)
+			protozoa(g, frame, i, pos, r);
+		else
+			pellet(g, frame, i, pos, r);
 	}
 
 	public boolean pointOnScreen(int x, int y) {
-		return 0 <= x && x <= window.getWidth() &&
-			   0 <= y && y <= window.getHeight();
+		return 0 <= x && x <= width &&
+			   0 <= y && y <= height;
 	}
 
 	public boolean squareInView(Vector2 origin, int size) {
@@ -306,62 +359,39 @@ public class SimulationRenderer extends Canvas {
 				pointOnScreen(originX + size, originY + size);
 	}
 
-	public boolean chunkInView(Chunk chunk) {
-		Vector2 chunkCoords = toRenderSpace(chunk.getTankCoords());
-		int chunkSize = toRenderSpace(simulation.getTank().getChunkManager().getChunkSize());
-		return squareInView(chunkCoords, chunkSize);
-	}
-
-	public void renderChunk(Graphics2D g, Chunk chunk) {
-		if (chunkInView(chunk)) {
-			if (simulation.inDebugMode())
-				stats.put("Chunks Rendered", stats.get("Chunks Rendered") + 1);
-			for (Cell e : chunk.getCells())
-				renderEntity(g, e);
-		}
-	}
-
-	public void renderEntityAttachments(Graphics2D g, Cell e) {
-		float r1 = toRenderSpace(e.getRadius());
-		Vector2 ePos = toRenderSpace(e.getPos());
-		if (circleNotVisible(ePos, r1) || e.getCellBindings().isEmpty())
-			return;
-
-		Color eColor = e.getColor();
-		int red = eColor.getRed();
-		int green = eColor.getGreen();
-		int blue = eColor.getBlue();
-
-		for (CellAdhesion.CellBinding binding : e.getCellBindings()) {
-			Cell attached = binding.getDestinationEntity();
-			float r2 = toRenderSpace(attached.getRadius());
-			float r = Math.min(r1, r2);
-			Stroke s = g.getStroke();
+	public void renderEntityAttachments(Graphics2D g, RenderFrame frame) {
+		Stroke s = g.getStroke();
+		for (int i = 0; i < frame.getAttachmentCount(); i++) {
+			Vector2 start = toRenderSpace(frame.getAttachment(i, 0), frame.getAttachment(i, 1));
+			Vector2 end = toRenderSpace(frame.getAttachment(i, 2), frame.getAttachment(i, 3));
+			float r = toRenderSpace(frame.getAttachment(i, 4));
+			if (circleNotVisible(start, r) && circleNotVisible(end, r))
+				continue;
 			g.setStroke(new BasicStroke(1.5f * r));
-			Vector2 attachedPos = toRenderSpace(attached.getPos());
-			Color attachedColor = attached.getColor();
-			g.setColor(new Color(
-					(red + attachedColor.getRed()) / 2,
-					(green + attachedColor.getGreen()) / 2,
-					(blue + attachedColor.getBlue()) / 2
-			).brighter());
-			g.drawLine((int) ePos.getX(), (int) ePos.getY(),
-					(int) attachedPos.getX(), (int) attachedPos.getY());
-			g.setStroke(s);
+			g.setColor(new Color(frame.getAttachmentColour(i)).brighter());
+			g.drawLine((int) start.getX(), (int) start.getY(),
+					(int) end.getX(), (int) end.getY());
 		}
+		g.setStroke(s);
 	}
 	
-	public void entities(Graphics2D g, Tank tank)
+	public void entities(Graphics2D g, RenderFrame frame)
 	{
-		for (Chunk chunk : tank.getChunkManager().getChunks())
-			for (Cell e : chunk.getCells())
-				renderEntityAttachments(g, e);
-		for (Chunk chunk : tank.getChunkManager().getChunks())
-			renderChunk(g, chunk);
+		renderEntityAttachments(g, frame);
+		for (int i = 0; i < frame.getCellCount(); i++)
+			renderEntity(g, frame, i);
+	}
 
-		if (simulation.inDebugMode() && track != null) {
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+	/**
+	 * Draws the broad-phase collision and interaction bounds around the tracked cell.
+	 * Unlike the rest of the frame, this reads the live tank, so it briefly takes the tank lock.
+	 */
+	public void trackingDebugOverlay(Graphics2D g, Tank tank) {
+		if (!simulation.inDebugMode() || track == null)
+			return;
 
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		synchronized (tank) {
 			ChunkManager chunkManager = tank.getChunkManager();
 			Iterator<Collidable> collisionEntities = chunkManager.broadCollisionDetection(
 					track.getPos(), track.getRadius());
@@ -374,6 +404,7 @@ public class SimulationRenderer extends Canvas {
 
 			if (track instanceof Protozoan) {
 				Protozoan p = (Protozoan) track;
+				retinaRays(g, p);
 				drawCollisionBounds(g, track, p.getInteractRange(), Color.WHITE.darker());
 
 				Iterator<Cell> interactCells = chunkManager.broadEntityDetection(
@@ -393,12 +424,12 @@ public class SimulationRenderer extends Canvas {
 					fillCircle(g, toRenderSpace(sensorPos), 2, Color.WHITE.darker());
 				}
 			}
-
-			if (antiAliasing)
-				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			else
-				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 		}
+
+		if (antiAliasing)
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		else
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 	}
 
 	public void rocks(Graphics2D g, Tank tank) {
@@ -418,11 +449,7 @@ public class SimulationRenderer extends Canvas {
 				yPoints[i] = (int) screenPoints[i].getY();
 
 			Color color = new Color(
-					rock.getColor().getRed(),
-					rock.getColor().getGreen(),
-					rock.getColor().getBlue(),
-					simulation.inDebugMode() ? 100 : 255
-			);
+					(rock.getColor() & 0xFFFFFF) | ((simulation.inDebugMode() ? 100 : 255) << 24), true);
 			g.setColor(color);
 
 			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
@@ -469,6 +496,44 @@ public class SimulationRenderer extends Canvas {
 		}
 	}
 
+	public void maskTank(Graphics g, Vector2 coords, float r, int alpha)
+	{
+		// Reaches past the window on every side so that it also covers the margin of the static layers
+		int left = -width, top = -height, right = 2*width, bottom = 2*height;
+
+		int n = microscopePolygonNPoints - 7;
+		for (int i = 0; i < n; i++)
+		{
+			float t = (float) (2*Math.PI * i / (float) n);
+			microscopePolygonXPoints[i] = (int) (coords.getX() + r * Math.cos(t));
+			microscopePolygonYPoints[i] = (int) (coords.getY() + r * Math.sin(t));
+		}
+
+		microscopePolygonXPoints[n] 	 = (int) (coords.getX()) + (int) r;
+		microscopePolygonYPoints[n]	 = (int) (coords.getY());
+
+		microscopePolygonXPoints[n+1] = right;
+		microscopePolygonYPoints[n+1] = (int) (coords.getY());
+
+		microscopePolygonXPoints[n+2] = right;
+		microscopePolygonYPoints[n+2] = top;
+
+		microscopePolygonXPoints[n+3] = left;
+		microscopePolygonYPoints[n+3] = top;
+
+		microscopePolygonXPoints[n+4] = left;
+		microscopePolygonYPoints[n+4] = bottom;
+
+		microscopePolygonXPoints[n+5] = right;
+		microscopePolygonYPoints[n+5] = bottom;
+
+		microscopePolygonXPoints[n+6] = right;
+		microscopePolygonYPoints[n+6] = (int) (coords.getY());
+
+		g.setColor(new Color(0, 0, 0, alpha));
+		g.fillPolygon(microscopePolygonXPoints, microscopePolygonYPoints, microscopePolygonNPoints);
+	}
+
 	public void drawCollisionBounds(Graphics2D g, Collidable collidable, Color color) {
 		if (collidable instanceof Cell) {
 			Cell e = (Cell) collidable;
@@ -514,10 +579,10 @@ public class SimulationRenderer extends Canvas {
 		Vector2 pos = toRenderSpace(e.getPos());
 		r = toRenderSpace(r);
 		if (!circleNotVisible(pos, r))
-			drawCircle(g, pos, r, color, window.getHeight() / 500);
+			drawCircle(g, pos, r, color, height / 500);
 	}
 	
-	public void background(Graphics2D graphics)
+	public void background(Graphics2D graphics, RenderFrame frame)
 	{
 		time += 0.1;
 		int backgroundR = 25 + (int)(5 *Math.cos(time/100.0));
@@ -526,43 +591,37 @@ public class SimulationRenderer extends Canvas {
 		Color backgroundColour = new Color(backgroundR, backgroundG, backgroundB);
 		graphics.setColor(backgroundColour);
 
-		graphics.fillRect(0, 0, window.getWidth(), window.getHeight());
+		graphics.fillRect(0, 0, width, height);
 
-		if (Settings.enableChemicalField && renderChemicals) {
+		if (renderChemicals && frame.getChemicalSolution() != null) {
 			if (antiAliasing)
 				graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 			else
 				graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-			ChemicalSolution chemicalSolution = simulation.getTank().getChemicalSolution();
-
-			int chemicalCellSize = toRenderSpace(chemicalSolution.getGridSize());
-
-			for (int i = 0; i < chemicalSolution.getNXChunks(); i++) {
-				for (int j = 0; j < chemicalSolution.getNYChunks(); j++) {
-
-					Vector2 chemicalCellCoords = toRenderSpace(chemicalSolution.toTankCoords(i, j));
-					int x = (int) chemicalCellCoords.getX();
-					int y = (int) chemicalCellCoords.getY();
-
-					float density = chemicalSolution.getPlantPheromoneDensity(i, j);
-					if (density < 0.05f || !squareInView(chemicalCellCoords, chemicalCellSize))
-						continue;
-
-					float alpha = density / 2f;
-					int r = (int) (alpha * 80 + (1 - alpha) * backgroundR);
-					int g = (int) (alpha * 200 + (1 - alpha) * backgroundG);
-					int b = (int) (alpha * 60 + (1 - alpha) * backgroundB);
-					graphics.setColor(new Color(r, g, b));
-
-					Vector2 nextCellCoords = toRenderSpace(chemicalSolution.toTankCoords(i+1, j+1));
-					int nextX = (int) nextCellCoords.getX();
-					int nextY = (int) nextCellCoords.getY();
-
-					graphics.fillRect(x, y, nextX - x, nextY - y);
-					if (simulation.inDebugMode() && advancedDebugInfo) {
-						graphics.setColor(Color.ORANGE.darker());
-						graphics.drawRect(x, y, chemicalCellSize, chemicalCellSize);
+			ChemicalSolution chemicalSolution = frame.getChemicalSolution();
+			int nX = chemicalSolution.getNXChunks(), nY = chemicalSolution.getNYChunks();
+			Vector2 fieldStart = toRenderSpace(chemicalSolution.toTankCoords(0, 0));
+			Vector2 fieldEnd = toRenderSpace(chemicalSolution.toTankCoords(nX, nY));
+
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			graphics.drawImage(plantPheromoneLayer.get(frame),
+					(int) fieldStart.getX(), (int) fieldStart.getY(),
+					(int) fieldEnd.getX(), (int) fieldEnd.getY(),
+					0, 0, nX, nY, null);
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+			if (simulation.inDebugMode() && advancedDebugInfo) {
+				int chemicalCellSize = toRenderSpace(chemicalSolution.getGridSize());
+				graphics.setColor(Color.ORANGE.darker());
+				for (int i = 0; i < nX; i++) {
+					for (int j = 0; j < nY; j++) {
+						if (frame.getChemicalDensity(Chemical.PLANT_PHEROMONE, i, j) < 0.05f)
+							continue;
+						Vector2 chemicalCellCoords = toRenderSpace(chemicalSolution.toTankCoords(i, j));
+						if (squareInView(chemicalCellCoords, chemicalCellSize))
+							graphics.drawRect((int) chemicalCellCoords.getX(), (int) chemicalCellCoords.getY(),
+									chemicalCellSize, chemicalCellSize);
 					}
 				}
 			}
@@ -572,23 +631,63 @@ public class SimulationRenderer extends Canvas {
 				graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 		}
 
-		if (simulation.inDebugMode() && advancedDebugInfo) {
-			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
-			graphics.setColor(Color.YELLOW.darker());
-			ChunkManager chunkManager = simulation.getTank().getChunkManager();
-			int w = toRenderSpace(chunkManager.getChunkSize());
-			for (Chunk chunk : chunkManager.getChunks()) {
-				Vector2 chunkCoords = toRenderSpace(chunk.getTankCoords());
-				graphics.drawRect((int) chunkCoords.getX(), (int) chunkCoords.getY(), w, w);
-			}
+		if (simulation.inDebugMode() && advancedDebugInfo)
+			drawStaticLayer(graphics, chunkGridLayer, this::chunkGrid);
+	}
 
-			if (antiAliasing)
-				graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			else
-				graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+	public void chunkGrid(Graphics2D graphics) {
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		graphics.setColor(Color.YELLOW.darker());
+		ChunkManager chunkManager = simulation.getTank().getChunkManager();
+		int w = toRenderSpace(chunkManager.getChunkSize());
+		for (Chunk chunk : chunkManager.getChunks()) {
+			Vector2 chunkCoords = toRenderSpace(chunk.getTankCoords());
+			graphics.drawRect((int) chunkCoords.getX(), (int) chunkCoords.getY(), w, w);
 		}
 	}
 
+	/**
+	 * Draws the rocks and the mask around the tank, neither of which change once the tank is
+	 * initialised, so they only need redrawing when the view changes.
+	 */
+	public void staticForeground(Graphics2D graphics) {
+		rocks(graphics, simulation.getTank());
+		maskTank(graphics,
+				toRenderSpace(new Vector2(0, 0)),
+				getTankRenderRadius() * getZoom(),
+				simulation.inDebugMode() ? 100 : 255);
+	}
+
+	/**
+	 * Draws a layer that only changes with the view. The layer is drawn in tank space at the current zoom,
+	 * covering the window plus a margin, and is moved to follow panning and tracking. It is only redrawn
+	 * when the view moves past the margin or when the zoom, debug mode or anti-aliasing change.
+	 */
+	private void drawStaticLayer(Graphics2D graphics, CachedLayer layer, Consumer<Graphics2D> painter) {
+		int marginX = (int) (staticLayerMargin * width), marginY = (int) (staticLayerMargin * height);
+		Vector2 offset = staticLayerOrigin == null ? null : toRenderSpace(staticLayerOrigin);
+		if (offset == null || staticLayerZoom != zoom
+				|| offset.getX() > 0 || offset.getX() + 2*marginX < 0
+				|| offset.getY() > 0 || offset.getY() + 2*marginY < 0) {
+			offset = new Vector2(-marginX, -marginY);
+			staticLayerOrigin = toTankSpace(offset);
+			staticLayerZoom = zoom;
+		}
+
+		int x = Math.round(offset.getX()), y = Math.round(offset.getY());
+		float[] key = {
+				zoom, staticLayerOrigin.getX(), staticLayerOrigin.getY(),
+				simulation.inDebugMode() ? 1 : 0,
+				antiAliasing ? 1 : 0
+		};
+		BufferedImage image = layer.get(width + 2*marginX, height + 2*marginY, key, g -> {
+			g.translate(-x, -y);
+			painter.accept(g);
+			g.translate(x, y);
+		});
+		graphics.drawImage(image, x, y, null);
+	}
+
 	@Override
 	public void paint(Graphics g)
 	{
@@ -603,7 +702,7 @@ public class SimulationRenderer extends Canvas {
 			framesRendered = 0;
 			lastFPSTime = Utils.getTimeSeconds();
 		}
-		superSimpleRender = stats.get("FPS") <= 10;
+		superSimpleRender = !offscreen && stats.get("FPS") <= 10;
 
 		if (antiAliasing)
 			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -617,25 +716,72 @@ public class SimulationRenderer extends Canvas {
 
 		zoom = targetZoom;
 		stats.put("Zoom", (int) (100 * zoom));
-		synchronized (simulation.getTank()) {
-			try {
-				background(graphics);
-				entities(graphics, simulation.getTank());
-				rocks(graphics, simulation.getTank());
 
-				ui.maskTank(graphics,
-						toRenderSpace(new Vector2(0, 0)),
-						getTankRenderRadius() * getZoom(),
-						simulation.inDebugMode() ? 100 : 255);
+		RenderFrame frame = frameBuffer.getLatestFrame();
+		updateTrackingFromFrame(frame);
+		captureView = computeCaptureView();
+		stats.put("Chunks Rendered", frame.getChunksCaptured());
 
-				if (showUI)
-					ui.render(graphics);
+		background(graphics, frame);
+		if (frame.isTankInitialised()) {
+			entities(graphics, frame);
+			trackingDebugOverlay(graphics, simulation.getTank());
+			drawStaticLayer(graphics, staticForegroundLayer, this::staticForeground);
+		} else {
+			maskTank(graphics,
+					toRenderSpace(new Vector2(0, 0)),
+					getTankRenderRadius() * getZoom(),
+					simulation.inDebugMode() ? 100 : 255);
+		}
 
-				graphics.dispose();
-				framesRendered++;
+		if (showUI)
+			ui.render(graphics, frame);
+
+		graphics.dispose();
+		framesRendered++;
+	}
+
+	/**
+	 * Called on the simulation thread after each update, while it holds the tank lock.
+	 * Only captures a new frame once the renderer has picked up the previous one.
+	 */
+	void captureFrame() {
+		if (!frameBuffer.wantsFrame())
+			return;
+		frameBuffer.getBackFrame().capture(simulation.getTank(), track, captureView);
+		frameBuffer.publish();
+	}
+
+	/**
+	 * @return the region of the tank currently on screen, as {xMin, yMin, xMax, yMax} in tank coordinates,
+	 * padded so that cells drifting in before the next frame is drawn are still captured
+	 */
+	private float[] computeCaptureView() {
+		Vector2 topLeft = toTankSpace(new Vector2(0, 0));
+		Vector2 bottomRight = toTankSpace(new Vector2(width, height));
+		float margin = 2 * Settings.maxParticleRadius;
+		return new float[]{
+				Math.min(topLeft.getX(), bottomRight.getX()) - margin,
+				Math.min(topLeft.getY(), bottomRight.getY()) - margin,
+				Math.max(topLeft.getX(), bottomRight.getX()) + margin,
+				Math.max(topLeft.getY(), bottomRight.getY()) + margin
+		};
+	}
 
-			} catch (ConcurrentModificationException ignored) {}
+	/**
+	 * Follows the tracked cell to its child if the frame found it dead, and
+	 * centres the view on the tracked cell's position in the frame.
+	 */
+	private void updateTrackingFromFrame(RenderFrame frame) {
+		Cell tracked = track;
+		if (tracked != null && frame.getTrackRequested() == tracked && frame.getTracked() != tracked) {
+			track(frame.getTracked());
+			tracked = track;
 		}
+		if (tracked != null && frame.getTracked() == tracked)
+			trackCentre = new Vector2(frame.getTrackedX(), frame.getTrackedY());
+		else if (tracked != null)
+			trackCentre = tracked.getPos().copy();
 	}
 
 	public float getTankViewRadius() {
@@ -656,9 +802,13 @@ public class SimulationRenderer extends Canvas {
 		return 3*tankRenderRadius/4;
 	}
 	
+	public Vector2 toRenderSpace(float x, float y) {
+		return toRenderSpace(new Vector2(x, y));
+	}
+
 	public Vector2 toRenderSpace(Vector2 v)
 	{
-		if (track == null)
+		if (track == null || trackCentre == null)
 			return v.copy()
 					.scale(1 / simulation.getTank().getRadius())
 					.translate(pan.mul(1 / tankRenderRadius))
@@ -666,13 +816,26 @@ public class SimulationRenderer extends Canvas {
 					.translate(tankRenderCoords);
 		else {
 			return v.copy()
-					.take(track.getPos())
+					.take(trackCentre)
 //					.rotate(rotate)
 					.scale(tankRenderRadius * zoom / simulation.getTank().getRadius())
 					.translate(tankRenderCoords);
 		}
 	}
 	
+	/**
+	 * Inverse of {@link #toRenderSpace(Vector2)}.
+	 */
+	public Vector2 toTankSpace(Vector2 v)
+	{
+		float tankRadius = simulation.getTank().getRadius();
+		Vector2 scaled = v.sub(tankRenderCoords).scale(tankRadius / (tankRenderRadius * zoom));
+		if (track == null || trackCentre == null)
+			return scaled.translate(pan.mul(-tankRadius / tankRenderRadius));
+		else
+			return scaled.translate(trackCentre);
+	}
+
 	public int toRenderSpace(float s)
 	{
 		return (int) (zoom * tankRenderRadius * s / simulation.getTank().getRadius());
@@ -702,6 +865,7 @@ public class SimulationRenderer extends Canvas {
 		else if (track != null)
 			pan = track.getPos().mul(tankRenderRadius);
 		track = e;
+		trackCentre = e == null ? null : e.getPos().copy();
 	}
 
 	public HashMap<String, Integer> getStats() {
@@ -718,6 +882,7 @@ public class SimulationRenderer extends Canvas {
 
 	public void resetCamera() {
 		track = null;
+		trackCentre = null;
 		pan = new Vector2(0, 0);
 		panPosTemp = new Vector2(0, 0);
 		targetZoom = 1;
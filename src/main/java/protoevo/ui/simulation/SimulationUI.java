@@ -4,7 +4,6 @@ import java.awt.*;
 import java.util.*;
 import java.util.List;
 
-import protoevo.biology.NNBrain;
 import protoevo.core.Application;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
@@ -19,7 +18,6 @@ import protoevo.ui.components.UIComponent;
 import protoevo.ui.main.MainScreenController;
 import protoevo.ui.main.MainScreenRenderer;
 import protoevo.utils.*;
-import protoevo.biology.Protozoan;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -36,9 +34,6 @@ public class SimulationUI implements ChangeListener {
 	private boolean showFPS = Settings.showFPS;
 	private final List<UIComponent> uiComponents = new ArrayList<>();
 	private final List<TextButton> leftButtons = new ArrayList<>();
-	private final int microscopePolygonNPoints = 500;
-	private int microscopePolygonXPoints[] = new int[microscopePolygonNPoints];
-	private int microscopePolygonYPoints[] = new int[microscopePolygonNPoints];
 
 	public SimulationUI(Window window, Simulation simulation, SimulationRenderer renderer)
 	{
@@ -188,45 +183,9 @@ public class SimulationUI implements ChangeListener {
 		return lineNumber;
 	}
 
-	public void maskTank(Graphics g, Vector2 coords, float r, int alpha)
+	public void render(Graphics2D g, RenderFrame frame)
 	{
-
-		int n = microscopePolygonNPoints - 7;
-		for (int i = 0; i < n; i++)
-		{
-			float t = (float) (2*Math.PI * i / (float) n);
-			microscopePolygonXPoints[i] = (int) (coords.getX() + r * Math.cos(t));
-			microscopePolygonYPoints[i] = (int) (coords.getY() + r * Math.sin(t));
-		}
-
-		microscopePolygonXPoints[n] 	 = (int) (coords.getX()) + (int) r;
-		microscopePolygonYPoints[n]	 = (int) (coords.getY());
-
-		microscopePolygonXPoints[n+1] = window.getWidth();
-		microscopePolygonYPoints[n+1] = (int) (coords.getY());
-
-		microscopePolygonXPoints[n+2] = window.getWidth();
-		microscopePolygonYPoints[n+2] = 0;
-
-		microscopePolygonXPoints[n+3] = 0;
-		microscopePolygonYPoints[n+3] = 0;
-
-		microscopePolygonXPoints[n+4] = 0;
-		microscopePolygonYPoints[n+4] = window.getHeight();
-
-		microscopePolygonXPoints[n+5] = window.getWidth();
-		microscopePolygonYPoints[n+5] = window.getHeight();
-
-		microscopePolygonXPoints[n+6] = window.getWidth();
-		microscopePolygonYPoints[n+6] = (int) (coords.getY());
-
-		g.setColor(new Color(0, 0, 0, alpha));
-		g.fillPolygon(microscopePolygonXPoints, microscopePolygonYPoints, microscopePolygonNPoints);
-	}
-
-	public void render(Graphics2D g)
-	{
-		maskTank(g,
+		renderer.maskTank(g,
 				renderer.getTankViewCoords(),
 				renderer.getTankViewRadius(),
 				simulation.inDebugMode() ? 150 : 200);
@@ -235,7 +194,7 @@ public class SimulationUI implements ChangeListener {
 
 		int lineNumber = 0;
 
-		if (!simulation.getTank().hasBeenInitialised()) {
+		if (!frame.isTankInitialised()) {
 			creatingTank.render(g);
 			return;
 		}
@@ -243,28 +202,22 @@ public class SimulationUI implements ChangeListener {
 		uiComponents.forEach(uiComponent -> uiComponent.render(g));
 
 		Cell tracked = renderer.getTracked();
-		if (tracked == null) {
-			Map<String, Float> tankStats = simulation.getTank().getStats();
-			lineNumber = renderStats(g, lineNumber, tankStats);
+		if (tracked == null || frame.getTracked() != tracked) {
+			lineNumber = renderStats(g, lineNumber, frame.getTankStats());
 
 		} else {
 			for (lineNumber = 0; lineNumber < info.size(); lineNumber++)
 				info.get(lineNumber).setPosition(new Vector2(textAwayFromEdge, getYPosLHS(lineNumber)));
 
 
-			info.get(0).setText("Number of pellets: " + simulation.getTank().numberOfPellets());
+			info.get(0).setText("Number of pellets: " + frame.getNumberOfPellets());
 			info.get(0).render(g);
-			info.get(1).setText("Number of protozoa: " + simulation.getTank().numberOfProtozoa());
+			info.get(1).setText("Number of protozoa: " + frame.getNumberOfProtozoa());
 			info.get(1).render(g);
 //			lineNumber++;
 
-			if (tracked.isDead() && !tracked.getChildren().isEmpty()) {
-				renderer.track(tracked.getChildren().iterator().next());
-				tracked = renderer.getTracked();
-			}
-
 			TextObject statsTitle = new TextObject(
-					tracked.getPrettyName() + " Stats",
+					frame.getTrackedName() + " Stats",
 					(int) (infoTextSize * 1.1),
 					new Vector2(textAwayFromEdge, getYPosLHS(lineNumber))
 			);
@@ -273,12 +226,10 @@ public class SimulationUI implements ChangeListener {
 
 			lineNumber++;
 
-			renderStats(g, lineNumber++, tracked.getStats());
+			renderStats(g, lineNumber++, frame.getTrackedStats());
 
-			if (tracked instanceof Protozoan && ((Protozoan) tracked).getBrain() instanceof NNBrain) {
-				NNBrain brain = (NNBrain) ((Protozoan) tracked).getBrain();
-				renderBrainNetwork(brain.network, g);
-			}
+			if (frame.getTrackedNetwork() != null)
+				renderBrainNetwork(frame.getTrackedNetwork(), g);
 		}
 
 		renderDebugStats(g);
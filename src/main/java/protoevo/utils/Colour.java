@@ -0,0 +1,64 @@
+package protoevo.utils;
+
+/**
+ * Helpers for colours packed into an int as 0xAARRGGBB, the same layout as {@code java.awt.Color.getRGB()},
+ * so that the simulation can pass colours around without allocating objects.
+ */
+public final class Colour {
+
+    public static final int BLACK = rgb(0, 0, 0);
+    public static final int WHITE = rgb(255, 255, 255);
+
+    private Colour() {}
+
+    public static int rgb(int r, int g, int b) {
+        return argb(255, r, g, b);
+    }
+
+    public static int argb(int a, int r, int g, int b) {
+        return ((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+    }
+
+    public static int alpha(int colour) {
+        return colour >>> 24;
+    }
+
+    public static int red(int colour) {
+        return (colour >> 16) & 0xFF;
+    }
+
+    public static int green(int colour) {
+        return (colour >> 8) & 0xFF;
+    }
+
+    public static int blue(int colour) {
+        return colour & 0xFF;
+    }
+
+    /**
+     * @return the colour with each of its red, green and blue components multiplied by {@code factor}
+     */
+    public static int scale(int colour, float factor) {
+        return argb(alpha(colour),
+                (int) (red(colour) * factor),
+                (int) (green(colour) * factor),
+                (int) (blue(colour) * factor));
+    }
+
+    /**
+     * @return the same colour as {@code java.awt.Color.darker()} would give
+     */
+    public static int darker(int colour) {
+        return scale(colour, 0.7f);
+    }
+
+    /**
+     * @return the opaque colour a fraction {@code t} of the way from {@code from} to {@code to}
+     */
+    public static int lerp(int from, int to, float t) {
+        return rgb(
+                (int) (red(from) + t * (red(to) - red(from))),
+                (int) (green(from) + t * (green(to) - green(from))),
+                (int) (blue(from) + t * (blue(to) - blue(from))));
+    }
+}